@@ -123,10 +123,68 @@ public final class SeleniumWrapperConfiguration {
         return configuration.getRequiredStringValue("screenshot.attachment.extension");
     }
 
+    /**
+     * Indicates if a screenshot which is identical to the previous screenshot of the same window shall be replaced by a text
+     * attachment referring to the previous one.
+     *
+     * @return <code>true</code> if identical consecutive screenshots shall be deduplicated.
+     */
+    public boolean isScreenshotDeduplication() {
+        return configuration.getBooleanValue("screenshot.deduplication", false);
+    }
+
+    /**
+     * Returns the scope of the screenshots attached to failed steps. <code>element</code> captures only the element used by the
+     * failed operation, extended by the element margin, and falls back to <code>windows</code> if there is no such element.
+     * <code>windows</code> captures all open windows.
+     *
+     * @return the scope of failure screenshots, <code>element</code> or <code>windows</code>.
+     */
+    public String getFailureScreenshotScope() {
+        return configuration.getStringValue("screenshot.failure.scope", "element");
+    }
+
+    /**
+     * Returns the number of pixels around an element to include in element screenshots.
+     *
+     * @return the margin of element screenshots, in pixels.
+     */
+    public int getScreenshotElementMargin() {
+        return configuration.getIntValue("screenshot.element.margin", 50);
+    }
+
     public String getPageSourceAttachmentExtension() {
         return configuration.getRequiredStringValue("page.source.attachment.extension");
     }
 
+    /**
+     * Indicates if page source attachments shall be gzip compressed.
+     *
+     * @return <code>true</code> if page source attachments shall be compressed.
+     */
+    public boolean isPageSourceCompression() {
+        return configuration.getBooleanValue("page.source.compression", false);
+    }
+
+    /**
+     * Returns the maximum size of page source attachments. Longer page sources are truncated, and a marker comment is appended.
+     *
+     * @return the maximum number of characters of page source attachments, in units of 1024 characters, or 0 for no limit.
+     */
+    public int getPageSourceMaxSize() {
+        return configuration.getIntValue("page.source.max.size", 0);
+    }
+
+    /**
+     * Indicates if the contents of inline <code>script</code> and <code>style</code> elements shall be removed from page source
+     * attachments.
+     *
+     * @return <code>true</code> if script and style contents shall be removed from page source attachments.
+     */
+    public boolean isPageSourceStripScripts() {
+        return configuration.getBooleanValue("page.source.strip.scripts", false);
+    }
+
     /**
      * Returns the time the framework waits for an activity to start.
      *
@@ -219,6 +277,16 @@ public final class SeleniumWrapperConfiguration {
         return Boolean.valueOf(configuration.getStringValue("use.remotedriver", "false")).booleanValue();
     }
 
+    /** Returns how input fields are cleared before typing into them: <code>select.all</code>, <code>script</code>,
+     * <code>backspace</code>, or <code>auto</code> to detect a reliable strategy on the first clear of each session. Fields
+     * which are not empty after clearing them with <code>select.all</code> or <code>script</code> are cleared with
+     * <code>backspace</code>.
+     *
+     * @return The name of the clear strategy. */
+    public String getTypeClearStrategy() {
+        return configuration.getStringValue("type.clear.strategy", "auto");
+    }
+
     /** Returns, for Selenium 2, the TCP timeout to use. If the Selenium Client does not respond within this period of time, the
      * request is aborted, and a SocketTimeoutException will be raised.
      *
@@ -248,6 +316,88 @@ public final class SeleniumWrapperConfiguration {
         return configuration.getStringValue("phantomjs.init.script");
     }
 
+    /** Returns, for Selenium 2, if the local proxy shall cache responses to GET requests in a cache shared by all proxies of the
+     * JVM. Only has effect if the local proxy flag is set to <code>true</code>.
+     *
+     * @return <code>true</code> if the local proxy shall cache responses, <code>false</code> otherwise. */
+    public boolean isProxyCacheEnabled() {
+        return Boolean.valueOf(configuration.getStringValue("proxy.cache.enabled", "false")).booleanValue();
+    }
+
+    /** Returns, for Selenium 2, the maximum size of the in-memory proxy response cache.
+     *
+     * @return The maximum size of the in-memory proxy response cache, in megabytes. */
+    public int getProxyCacheMaxSize() {
+        return configuration.getIntValue("proxy.cache.max.size", 64);
+    }
+
+    /** Returns, for Selenium 2, the regular expressions for request paths which the proxy shall cache regardless of the
+     * caching headers of the response.
+     *
+     * @return The (possibly empty) list of regular expressions for request paths to always cache. */
+    public String[] getProxyCacheForcedPatterns() {
+        String value = configuration.getStringValue("proxy.cache.forced.patterns");
+        if (value == null) {
+            return new String[0];
+        }
+
+        List<String> result = new ArrayList<String>();
+        for (String pattern : value.split(";")) {
+            pattern = pattern.trim();
+            if (pattern.length() > 0) {
+                result.add(pattern);
+            }
+        }
+
+        return result.toArray(new String[0]);
+    }
+
+    /** Returns, for Selenium 2, the time for which responses to request paths matching a forced cache pattern are considered
+     * fresh.
+     *
+     * @return The time for which responses to forced cache paths are considered fresh, in seconds. */
+    public int getProxyCacheForcedMaxAge() {
+        return configuration.getIntValue("proxy.cache.forced.max.age", 3600);
+    }
+
+    /** Returns, for Selenium 2, the directory to move entries of the proxy response cache to when they are evicted from memory.
+     *
+     * @return The directory for the proxy response cache disk tier, or <code>null</code> if no disk tier shall be used. */
+    public String getProxyCacheDiskDirectory() {
+        return configuration.getStringValue("proxy.cache.disk.dir");
+    }
+
+    /** Returns, for Selenium 2, the maximum size of the disk tier of the proxy response cache.
+     *
+     * @return The maximum size of the disk tier of the proxy response cache, in megabytes. */
+    public int getProxyCacheDiskMaxSize() {
+        return configuration.getIntValue("proxy.cache.disk.max.size", 256);
+    }
+
+    /** Returns, for Selenium 2, the number of requests the local proxy shall keep in its traffic capture. The captured requests
+     * are attached as HAR file to the debug attachments of failed steps.
+     *
+     * @return The number of requests to keep in the traffic capture, or 0 if traffic shall not be captured. */
+    public int getProxyTrafficCaptureSize() {
+        return configuration.getIntValue("proxy.traffic.capture.size", 0);
+    }
+
+    /** Returns, for Selenium 2, the maximum number of client connections the local proxy processes concurrently. Further
+     * connections are closed immediately.
+     *
+     * @return The maximum number of worker threads of the local proxy. */
+    public int getProxyMaxThreads() {
+        return configuration.getIntValue("proxy.max.threads", 32);
+    }
+
+    /** Returns, for Selenium 2, the number of milliseconds the local proxy waits for running requests to finish when it is
+     * stopped, before all its connections are closed.
+     *
+     * @return The shutdown timeout of the local proxy, in milliseconds. */
+    public int getProxyShutdownTimeout() {
+        return configuration.getIntValue("proxy.shutdown.timeout", 2000);
+    }
+
     /** Returns, for Selenium 2, the name of the AJAX framework to auto-check for pending operations, if any.
      *
      * @return The name of the AJAX framework to auto-check for pending operations, or <code>null</code> to not perform any
@@ -256,6 +406,106 @@ public final class SeleniumWrapperConfiguration {
         return configuration.getStringValue("auto.wait.for.ajax.framework");
     }
 
+    /** Returns, for Selenium 2, the time for which the local proxy must not have seen any request activity to consider the AUT
+     * idle. Only used if the AJAX framework to auto-check is <code>network</code>.
+     *
+     * @return The time without network activity after which the AUT is considered idle, in milliseconds. */
+    public int getNetworkIdleTime() {
+        return configuration.getIntValue("network.idle.time", 500);
+    }
+
+    /** Returns the maximum estimated heap size of the HTML documents cached for XPath evaluations, shared by all sessions.
+     *
+     * @return The maximum size of the XPath document cache, in MB. */
+    public int getXPathDocumentCacheMaxSize() {
+        return configuration.getIntValue("xpath.document.cache.max.size", 256);
+    }
+
+    /** Indicates if the documents cached for XPath evaluations may be reclaimed by the garbage collector under memory pressure.
+     *
+     * @return <code>true</code> if the XPath document cache shall only softly reference its documents. */
+    public boolean isXPathDocumentCacheSoftValues() {
+        return configuration.getBooleanValue("xpath.document.cache.soft.values", false);
+    }
+
+    /** Returns the minimum size of a page from which on XPaths of the subset supported by streaming evaluation are evaluated in
+     * a single pass over the page source, without building and caching a DOM. Streaming evaluation is disabled by default, as
+     * its results are detached copies without parent and owner document of the page, and it does not perform the error
+     * recovery of the HTML parser.
+     *
+     * @return The minimum page size for streaming XPath evaluation, in units of 1024 characters, or 0 to disable it. */
+    public int getXPathStreamingThreshold() {
+        return configuration.getIntValue("xpath.streaming.threshold", 0);
+    }
+
+    /** Returns where XPath evaluations of <code>evalXPath</code> are performed. <code>browser</code> evaluates the XPath in the
+     * browser and transfers only the matching nodes, falling back to <code>local</code> if the browser cannot evaluate it.
+     * <code>local</code> transfers the page source and evaluates the XPath in the JVM.
+     *
+     * @return The XPath evaluation mode, <code>local</code> or <code>browser</code>. */
+    public String getXPathEvaluationMode() {
+        return configuration.getStringValue("xpath.evaluation.mode", "local");
+    }
+
+    /** Returns the number of milliseconds for which the titles and names of windows other than the current one are reused
+     * when enumerating the windows of a session, instead of switching to each window to query them again. Titles changed by the
+     * application within this time are not noticed, so caching is disabled by default.
+     *
+     * @return The maximum age of cached window titles and names, in milliseconds. 0 disables caching. */
+    public int getWindowRegistryMaxAge() {
+        return configuration.getIntValue("window.registry.max.age", 0);
+    }
+
+    /** Returns the host of the DevTools HTTP endpoint of Chromium-based browsers. For remote drivers, this must be the node
+     * running the browser, as the Selenium URL usually points to a grid hub; if it is not configured, the endpoint is only
+     * used for local drivers. As the endpoint serves all targets of one browser on a fixed port, it is only suitable for
+     * nodes running a single browser at a time.
+     *
+     * @return The host of the DevTools HTTP endpoint, or an empty string to use the local host for local drivers only. */
+    public String getDevToolsHost() {
+        return configuration.getStringValue("devtools.host", "");
+    }
+
+    /** Returns the port of the DevTools HTTP endpoint of Chromium-based browsers, which is used to read the titles of all
+     * windows with a single request. If not configured, the port is taken from a <code>--remote-debugging-port</code> browser
+     * argument. See {@link #getDevToolsHost()} for the host of the endpoint.
+     *
+     * @return The port of the DevTools HTTP endpoint, or 0 if it shall not be used. */
+    public int getDevToolsPort() {
+        int port = configuration.getIntValue("devtools.port", 0);
+        if (port > 0) {
+            return port;
+        }
+        for (String arg : getBrowserArguments()) {
+            if (arg.startsWith("--remote-debugging-port=")) {
+                try {
+                    return Integer.parseInt(arg.substring("--remote-debugging-port=".length()));
+                }
+                catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** Indicates if the browser shall be quit in the background when closing the application under test, without closing its
+     * windows one by one. The Selenium host is released when the browser has quit.
+     *
+     * @return <code>true</code> if the browser shall be quit in the background. */
+    public boolean isFastTeardown() {
+        return configuration.getBooleanValue("fast.teardown", false);
+    }
+
+    /** Returns the maximum number of milliseconds to wait for a browser quit in the background, before it is abandoned and the
+     * Selenium host is released anyway. When the JVM exits, it waits for pending quits up to this timeout. Only used if fast
+     * teardown is enabled.
+     *
+     * @return The timeout for quitting the browser in the background, in milliseconds. */
+    public int getQuitTimeout() {
+        return configuration.getIntValue("quit.timeout", 30000);
+    }
+
     /** Returns, for Selenium 2, the number of milliseconds to wait after typing into an input component and before tabbing out.
      *
      * @return The number of milliseonds to wait after typing into an input component and before tabbing out. 0 indicates not to
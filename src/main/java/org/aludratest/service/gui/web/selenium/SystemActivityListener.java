@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium;
+
+/** Receives the activity notifications of a {@link SystemActivityNotifier}. Notifications may be sent from any thread. */
+public interface SystemActivityListener {
+
+    /** Called when the system under test starts an activity, e.g. processing a request. Activities may overlap; the system
+     * is considered busy until each started activity has been finished. */
+    public void activityStarted();
+
+    /** Called when the system under test finishes an activity which has been reported by {@link #activityStarted()}. */
+    public void activityFinished();
+
+}
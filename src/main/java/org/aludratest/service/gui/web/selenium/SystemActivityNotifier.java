@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium;
+
+import org.aludratest.service.SystemConnectorInterface;
+
+/** Interface for System Connectors able to push notifications about the activity of the system under test. If a System
+ * Connector provides this interface, the Selenium service waits for these notifications after each interaction, and wakes up
+ * as soon as the system has completed its activity, instead of polling a
+ * {@link org.aludratest.service.util.SystemBusyIndicator} at the task polling interval. If the System Connector also provides
+ * a <code>SystemBusyIndicator</code>, it is still polled at that interval as fallback, e.g. for notifications which got lost.
+ * 
+ * @see SystemActivityListener */
+public interface SystemActivityNotifier extends SystemConnectorInterface {
+
+    /** Registers a listener to notify about activities of the system under test.
+     * @param listener the listener. */
+    public void addActivityListener(SystemActivityListener listener);
+
+    /** Unregisters a listener.
+     * @param listener the listener. */
+    public void removeActivityListener(SystemActivityListener listener);
+
+}
@@ -24,8 +24,19 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.util.DataUtil;
@@ -66,6 +77,15 @@ public class AuthenticatingHttpProxy {
     /** The buffer size for the socket */
     private static final int BUFSIZE = 8 * 1024;
 
+    /** The default maximum number of worker threads. */
+    private static final int DEFAULT_MAX_WORKER_THREADS = 32;
+
+    /** The default time to wait for requests to finish when stopping the proxy, in milliseconds. */
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT = 2000;
+
+    /** The time idle worker threads are kept alive, in seconds. */
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
     /** The String-formatted IP address of the host on which the process is running. */
     private String localHost;
 
@@ -83,6 +103,34 @@ public class AuthenticatingHttpProxy {
 
     private ServerThread serverThread;
 
+    /** The rules for blocking, stubbing or delaying requests. */
+    private final List<RequestRule> requestRules = new CopyOnWriteArrayList<RequestRule>();
+
+    /** The response cache to use, or <code>null</code> if responses shall not be cached. */
+    private volatile HttpResponseCache responseCache;
+
+    /** The capture of the processed requests, or <code>null</code> if traffic shall not be recorded. */
+    private volatile TrafficCapture trafficCapture;
+
+    /** The maximum number of concurrently processed connections. */
+    private int maxWorkerThreads = DEFAULT_MAX_WORKER_THREADS;
+
+    /** The time to wait for requests to finish when stopping the proxy, in milliseconds. */
+    private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+    /** The executor running the {@link RequestProcessorThread}s; created on {@link #start()}. */
+    private ThreadPoolExecutor workerPool;
+
+    /** The connections which have been accepted and are not yet closed. */
+    private final Set<RequestProcessorThread> activeConnections = Collections
+            .newSetFromMap(new ConcurrentHashMap<RequestProcessorThread, Boolean>());
+
+    /** The number of requests currently being processed. */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    /** The time of the last request start or end, in milliseconds. */
+    private volatile long lastActivityTime = System.currentTimeMillis();
+
     /** Constructor with the central configuration settings. */
     public AuthenticatingHttpProxy(int localPort, String targetHost, int targetPort) {
         try {
@@ -116,6 +164,119 @@ public class AuthenticatingHttpProxy {
         customHeaders.put(key, value);
     }
 
+    /** @return the names of the custom HTTP request headers which are added to forwarded calls. */
+    public Set<String> getCustomRequestHeaderNames() {
+        return Collections.unmodifiableSet(customHeaders.keySet());
+    }
+
+    /** Adds a rule for blocking, stubbing or delaying requests. Rules are checked in the order they have been added, and only
+     * the first matching rule is applied to a request.
+     * @param rule the rule to add. */
+    public void addRequestRule(RequestRule rule) {
+        requestRules.add(rule);
+    }
+
+    /** Removes all rules which have been added using {@link #addRequestRule(RequestRule)}. */
+    public void clearRequestRules() {
+        requestRules.clear();
+    }
+
+    /** Returns the first request rule which matches the given request URI.
+     * @param uri the request URI, as sent to the proxy.
+     * @return the first matching rule, or <code>null</code> if no rule matches. */
+    public RequestRule findRequestRule(String uri) {
+        for (RequestRule rule : requestRules) {
+            if (rule.matches(uri)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /** Sets the maximum number of connections to process concurrently. Takes effect on the next {@link #start()}. Since a
+     * worker serves a connection until it is closed, connections accepted while all workers are busy are not queued, but
+     * closed immediately, so the browser reports an error instead of waiting for a keep-alive connection to close.
+     * @param maxWorkerThreads the maximum number of worker threads. */
+    public void setMaxWorkerThreads(int maxWorkerThreads) {
+        this.maxWorkerThreads = maxWorkerThreads;
+    }
+
+    /** Sets the time {@link #stop()} waits for in-flight requests to finish before closing all connections.
+     * @param shutdownTimeout the timeout, in milliseconds. */
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /** @return the number of client connections which have been accepted and are not yet closed. */
+    public int getActiveConnectionCount() {
+        return activeConnections.size();
+    }
+
+    /** @return the number of worker threads currently existing for this proxy. */
+    public int getWorkerThreadCount() {
+        ThreadPoolExecutor pool = workerPool;
+        return (pool != null ? pool.getPoolSize() : 0);
+    }
+
+    /** @return the number of worker threads currently processing a connection. */
+    public int getBusyWorkerThreadCount() {
+        ThreadPoolExecutor pool = workerPool;
+        return (pool != null ? pool.getActiveCount() : 0);
+    }
+
+    void connectionClosed(RequestProcessorThread connection) {
+        activeConnections.remove(connection);
+    }
+
+    /** @return the number of requests which are currently being processed by this proxy. */
+    public int getInFlightRequestCount() {
+        return inFlightRequests.get();
+    }
+
+    /** @return the time of the last start or end of a request processed by this proxy, in milliseconds. */
+    public long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    /** Checks if there has been no network activity for the given time.
+     * @param quietMillis the time in milliseconds for which no request must have been started or finished.
+     * @return <code>true</code> if no request is in progress and the last activity was at least <code>quietMillis</code> ago. */
+    public boolean isIdle(long quietMillis) {
+        return inFlightRequests.get() <= 0 && System.currentTimeMillis() - lastActivityTime >= quietMillis;
+    }
+
+    void requestStarted() {
+        inFlightRequests.incrementAndGet();
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    void requestFinished() {
+        inFlightRequests.decrementAndGet();
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    /** @return the capture recording the requests processed by this proxy, or <code>null</code> if traffic is not recorded. */
+    public TrafficCapture getTrafficCapture() {
+        return trafficCapture;
+    }
+
+    /** Sets the capture which shall record the requests processed by this proxy.
+     * @param trafficCapture the capture to use, or <code>null</code> to not record any traffic. */
+    public void setTrafficCapture(TrafficCapture trafficCapture) {
+        this.trafficCapture = trafficCapture;
+    }
+
+    /** @return the response cache used by this proxy, or <code>null</code> if responses are not cached. */
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /** Sets the response cache to use for GET requests. The cache may be shared with other proxies.
+     * @param responseCache the response cache to use, or <code>null</code> to not cache any responses. */
+    public void setResponseCache(HttpResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
     public String mapTargetToProxyUrl(String requestedUrlString) {
         try {
             URL requestedUrl = new URL(requestedUrlString);
@@ -136,10 +297,17 @@ public class AuthenticatingHttpProxy {
 
     public void start() throws IOException {
         serverThread = new ServerThread(localPort, realHost);
+        // no queue: a queued connection would only be served after another keep-alive connection has been closed
+        workerPool = new ThreadPoolExecutor(maxWorkerThreads, maxWorkerThreads, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new WorkerThreadFactory(localPort));
+        workerPool.allowCoreThreadTimeOut(true);
         this.running = true;
         serverThread.start();
     }
 
+    /** Stops accepting new connections, waits up to the shutdown timeout for in-flight requests to finish, and then closes all
+     * remaining connections, including idle keep-alive connections. Returns when all worker threads have finished or the
+     * timeout has expired again. */
     public void stop() {
         this.running = false;
         try {
@@ -150,6 +318,51 @@ public class AuthenticatingHttpProxy {
         } catch (IOException e) {
             LOGGER.error("Error closing server socket. ", e);
         }
+        ThreadPoolExecutor pool = this.workerPool;
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            // drain: let requests which are currently processed finish
+            long deadline = System.currentTimeMillis() + shutdownTimeout;
+            while (inFlightRequests.get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // close all connections, which also unblocks workers waiting for the next keep-alive request
+            for (RequestProcessorThread connection : activeConnections) {
+                connection.shutdown();
+            }
+            pool.shutdownNow();
+            if (!pool.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Proxy worker threads on port " + localPort + " did not terminate within " + shutdownTimeout + " ms");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        activeConnections.clear();
+        this.workerPool = null;
+    }
+
+    /** Creates named daemon threads for the worker pool. */
+    static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        WorkerThreadFactory(int localPort) {
+            this.namePrefix = "aludratest-proxy-" + localPort + "-worker-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
     }
 
     class ServerThread extends Thread {
@@ -190,7 +403,7 @@ public class AuthenticatingHttpProxy {
 
             // Set up incoming request handler
             UriHttpRequestHandlerMapper reqistry = new UriHttpRequestHandlerMapper();
-            reqistry.register("*", new ProxyHandler(this.target, outhttpproc, httpexecutor));
+            reqistry.register("*", new ProxyHandler(this.target, outhttpproc, httpexecutor, AuthenticatingHttpProxy.this));
 
             // Set up the HTTP service
             this.httpService = new HttpService(inhttpproc, reqistry);
@@ -214,10 +427,19 @@ public class AuthenticatingHttpProxy {
                     outconn.bind(outsocket);
                     LOGGER.debug("Outgoing connection to " + outsocket.getInetAddress());
 
-                    // Start worker thread
-                    Thread t = new RequestProcessorThread(AuthenticatingHttpProxy.this, this.httpService, inconn, outconn);
-                    t.setDaemon(true);
-                    t.start();
+                    // Hand connection over to a worker thread
+                    RequestProcessorThread processor = new RequestProcessorThread(AuthenticatingHttpProxy.this,
+                            this.httpService, inconn, outconn);
+                    activeConnections.add(processor);
+                    try {
+                        workerPool.execute(processor);
+                    }
+                    catch (RejectedExecutionException e) {
+                        LOGGER.warn("All " + maxWorkerThreads + " worker threads of proxy port " + localPort
+                                + " are busy; closing connection from " + insocket.getInetAddress());
+                        activeConnections.remove(processor);
+                        processor.shutdown();
+                    }
                 } catch (InterruptedIOException e) {
                     break;
                 } catch (SocketException e) {
@@ -0,0 +1,518 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Size-bounded LRU cache for HTTP GET responses, intended to be shared by all {@link AuthenticatingHttpProxy} instances of a
+ * JVM, so that static resources of the AUT (CSS, JavaScript, images) are only transferred once per test run even though every
+ * test case uses a fresh browser profile with a cold browser cache. <br>
+ * The cache honours the <code>Cache-Control</code>, <code>Expires</code>, <code>ETag</code> and <code>Last-Modified</code>
+ * response headers. Stale entries with a validator are revalidated with a conditional request. Request paths matching one of
+ * the <i>forced patterns</i> are cached for a fixed time regardless of the response headers. Entries evicted from memory can
+ * optionally be moved to a size-bounded disk directory. <br>
+ * As each proxy may inject its own <code>Authorization</code> and custom request headers, the values of these headers are part
+ * of the cache key, so that a response fetched with the credentials of one proxy is never served to another proxy. */
+public class HttpResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private static final String CACHE_FILE_SUFFIX = ".cache";
+
+    /** Maximum size of a single entry, relative to the maximum memory size. */
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final long maxMemorySize;
+
+    private final Pattern[] forcedPatterns;
+
+    private final long forcedMaxAgeMillis;
+
+    private final File diskDirectory;
+
+    private final long maxDiskSize;
+
+    private final LinkedHashMap<String, Entry> memoryEntries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+
+    private long memorySize;
+
+    private long diskSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** Creates a new response cache.
+     * @param maxMemorySize the maximum number of body bytes to hold in memory.
+     * @param forcedPatterns regular expressions for request paths which shall be cached regardless of the response headers. May
+     *            be <code>null</code>.
+     * @param forcedMaxAgeSeconds the time, in seconds, for which responses to forced paths are considered fresh.
+     * @param diskDirectory the directory to move entries to which are evicted from memory, or <code>null</code> to not use a
+     *            disk tier.
+     * @param maxDiskSize the maximum number of body bytes to store in the disk directory. */
+    public HttpResponseCache(long maxMemorySize, String[] forcedPatterns, int forcedMaxAgeSeconds, File diskDirectory,
+            long maxDiskSize) {
+        this.maxMemorySize = maxMemorySize;
+        this.forcedMaxAgeMillis = forcedMaxAgeSeconds * 1000L;
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        if (forcedPatterns != null) {
+            for (String pattern : forcedPatterns) {
+                patterns.add(Pattern.compile(pattern));
+            }
+        }
+        this.forcedPatterns = patterns.toArray(new Pattern[patterns.size()]);
+        if (diskDirectory != null && !diskDirectory.isDirectory() && !diskDirectory.mkdirs()) {
+            LOGGER.warn("Could not create response cache directory " + diskDirectory + "; disk cache is disabled");
+            diskDirectory = null;
+        }
+        this.diskDirectory = diskDirectory;
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    /** @return the number of requests which have been answered from the cache without contacting the server. */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** @return the number of cacheable requests which had to be forwarded to the server. */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** @return the number of body bytes currently held in memory. */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /** Creates the cache key for the given request to the given target, considering only the <code>Authorization</code>
+     * header as credentials.
+     * @param target the server to which the request is forwarded.
+     * @param request the request.
+     * @return the cache key. */
+    public static String createKey(HttpHost target, HttpRequest request) {
+        return createKey(target, request, Collections.<String> emptySet());
+    }
+
+    /** Creates the cache key for the given request to the given target. If the request contains an <code>Authorization</code>
+     * header or one of the given credential headers, a hash of their values is appended to the key.
+     * @param target the server to which the request is forwarded.
+     * @param request the request, including the headers injected by the proxy.
+     * @param credentialHeaders the names of further request headers which identify the user, e.g. the custom request headers
+     *            injected by the proxy.
+     * @return the cache key. */
+    public static String createKey(HttpHost target, HttpRequest request, Collection<String> credentialHeaders) {
+        Header acceptEncoding = request.getFirstHeader("Accept-Encoding");
+        String key = target.toHostString() + request.getRequestLine().getUri() + "|"
+                + (acceptEncoding == null ? "" : acceptEncoding.getValue());
+
+        TreeSet<String> names = new TreeSet<String>();
+        names.add("authorization");
+        for (String name : credentialHeaders) {
+            names.add(name.toLowerCase());
+        }
+        StringBuilder credentials = new StringBuilder();
+        for (String name : names) {
+            for (Header header : request.getHeaders(name)) {
+                credentials.append(name).append(':').append(header.getValue()).append('\n');
+            }
+        }
+        return credentials.length() == 0 ? key : key + "|" + DigestUtils.sha1Hex(credentials.toString());
+    }
+
+    /** Checks if a response to the given request may be taken from or put into the cache.
+     * @param request the request to check.
+     * @return <code>true</code> if the request is a GET request and the client does not explicitly bypass caches. */
+    public boolean isCacheable(HttpRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return false;
+        }
+        for (Header header : request.getHeaders("Cache-Control")) {
+            String value = header.getValue().toLowerCase();
+            if (value.contains("no-cache") || value.contains("no-store")) {
+                return false;
+            }
+        }
+        return request.getFirstHeader("Pragma") == null;
+    }
+
+    /** Looks up a cached response.
+     * @param key the cache key, as created by {@link #createKey(HttpHost, HttpRequest, Collection)}.
+     * @return the cached response, which may be stale, or <code>null</code> if there is no cached response for the key. */
+    public synchronized Entry lookup(String key) {
+        Entry entry = memoryEntries.get(key);
+        if (entry == null && diskEntries.containsKey(key)) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                putInMemory(key, entry);
+            }
+        }
+        if (entry != null && entry.isFresh()) {
+            hitCount.incrementAndGet();
+        }
+        else {
+            missCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /** Adds the validators of a stale cache entry to a request, if the client did not send own validators.
+     * @param request the request to forward to the server.
+     * @param entry the stale cache entry.
+     * @return <code>true</code> if validators have been added, <code>false</code> otherwise. */
+    public boolean addValidators(HttpRequest request, Entry entry) {
+        if (request.containsHeader("If-None-Match") || request.containsHeader("If-Modified-Since")) {
+            return false;
+        }
+        if (entry.etag == null && entry.lastModified == null) {
+            return false;
+        }
+        if (entry.etag != null) {
+            request.addHeader("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            request.addHeader("If-Modified-Since", entry.lastModified);
+        }
+        return true;
+    }
+
+    /** Updates the freshness of a cache entry after the server has answered a conditional request with
+     * <code>304 Not Modified</code>.
+     * @param key the cache key.
+     * @param entry the revalidated entry.
+     * @param notModifiedResponse the 304 response of the server. */
+    public synchronized void revalidated(String key, Entry entry, HttpResponse notModifiedResponse) {
+        Long expires = computeExpires(notModifiedResponse, entry.forced);
+        entry.expires = (expires != null ? expires.longValue() : System.currentTimeMillis());
+        if (!memoryEntries.containsKey(key)) {
+            putInMemory(key, entry);
+        }
+    }
+
+    /** Stores the response of the server in the cache, if it is cacheable. In this case, the entity of the response is replaced
+     * by a buffered copy.
+     * @param key the cache key.
+     * @param request the request which has been forwarded to the server.
+     * @param response the response of the server.
+     * @throws IOException if the response entity could not be read. */
+    public void store(String key, HttpRequest request, HttpResponse response) throws IOException {
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || response.containsHeader("Set-Cookie")) {
+            return;
+        }
+        HttpEntity entity = response.getEntity();
+        Header contentLength = response.getFirstHeader("Content-Length");
+        if (entity == null || contentLength == null || entity.getContentLength() < 0
+                || entity.getContentLength() > maxMemorySize / MAX_ENTRY_FRACTION) {
+            return;
+        }
+        Header vary = response.getFirstHeader("Vary");
+        if (vary != null && !"accept-encoding".equalsIgnoreCase(vary.getValue().trim())) {
+            return;
+        }
+
+        boolean forced = isForced(request.getRequestLine().getUri());
+        Long expires = computeExpires(response, forced);
+        Header etag = response.getFirstHeader("ETag");
+        Header lastModified = response.getFirstHeader("Last-Modified");
+        if (expires == null || (expires.longValue() <= System.currentTimeMillis() && etag == null && lastModified == null)) {
+            return;
+        }
+
+        byte[] body = EntityUtils.toByteArray(entity);
+        ByteArrayEntity bufferedEntity = new ByteArrayEntity(body);
+        bufferedEntity.setContentType(entity.getContentType());
+        bufferedEntity.setContentEncoding(entity.getContentEncoding());
+        response.setEntity(bufferedEntity);
+
+        Entry entry = new Entry(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(),
+                response.getAllHeaders(), body, expires.longValue(), forced);
+        synchronized (this) {
+            putInMemory(key, entry);
+        }
+        LOGGER.debug("Cached response for {} ({} bytes)", key, Integer.valueOf(body.length));
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private boolean isForced(String uri) {
+        String path = uri;
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+        for (Pattern pattern : forcedPatterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Computes the expiry timestamp of a response.
+     * @return the expiry timestamp, or <code>null</code> if the response must not be stored. */
+    private Long computeExpires(HttpResponse response, boolean forced) {
+        long now = System.currentTimeMillis();
+        if (forced) {
+            return Long.valueOf(now + forcedMaxAgeMillis);
+        }
+        Long maxAge = null;
+        for (Header header : response.getHeaders("Cache-Control")) {
+            for (HeaderElement element : header.getElements()) {
+                String name = element.getName().toLowerCase();
+                if ("no-store".equals(name) || "private".equals(name)) {
+                    return null;
+                }
+                if ("no-cache".equals(name)) {
+                    return Long.valueOf(now);
+                }
+                if (("max-age".equals(name) && maxAge == null) || "s-maxage".equals(name)) {
+                    try {
+                        maxAge = Long.valueOf(Long.parseLong(element.getValue().trim()) * 1000L);
+                    }
+                    catch (RuntimeException e) {
+                        return Long.valueOf(now);
+                    }
+                }
+            }
+        }
+        if (maxAge != null) {
+            return Long.valueOf(now + maxAge.longValue());
+        }
+        Header expiresHeader = response.getFirstHeader("Expires");
+        if (expiresHeader != null) {
+            Date date = DateUtils.parseDate(expiresHeader.getValue());
+            return Long.valueOf(date == null ? now : date.getTime());
+        }
+        // no explicit freshness; can still be used after revalidation
+        return Long.valueOf(now);
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        Entry old = memoryEntries.put(key, entry);
+        if (old != null) {
+            memorySize -= old.body.length;
+        }
+        memorySize += entry.body.length;
+        removeFromDisk(key);
+        Iterator<Map.Entry<String, Entry>> iterator = memoryEntries.entrySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            memorySize -= eldest.getValue().body.length;
+            if (diskDirectory != null && eldest.getValue() != entry) {
+                writeToDisk(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private File getCacheFile(String key) {
+        return new File(diskDirectory, DigestUtils.sha1Hex(key) + CACHE_FILE_SUFFIX);
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getCacheFile(key))));
+            out.writeUTF(key);
+            out.writeInt(entry.statusCode);
+            out.writeUTF(entry.reasonPhrase == null ? "" : entry.reasonPhrase);
+            out.writeInt(entry.headers.length);
+            for (Header header : entry.headers) {
+                out.writeUTF(header.getName());
+                out.writeUTF(header.getValue());
+            }
+            out.writeLong(entry.expires);
+            out.writeBoolean(entry.forced);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not write response cache file for " + key, e);
+            return;
+        }
+        finally {
+            closeQuietly(out);
+        }
+        diskEntries.put(key, Long.valueOf(entry.body.length));
+        diskSize += entry.body.length;
+        Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+        while (diskSize > maxDiskSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            diskSize -= eldest.getValue().longValue();
+            if (!getCacheFile(eldest.getKey()).delete()) {
+                LOGGER.debug("Could not delete response cache file for {}", eldest.getKey());
+            }
+        }
+    }
+
+    private Entry readFromDisk(String key) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(getCacheFile(key))));
+            if (!key.equals(in.readUTF())) {
+                // hash collision; treat as miss
+                return null;
+            }
+            int statusCode = in.readInt();
+            String reasonPhrase = in.readUTF();
+            Header[] headers = new Header[in.readInt()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = new BasicHeader(in.readUTF(), in.readUTF());
+            }
+            long expires = in.readLong();
+            boolean forced = in.readBoolean();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(statusCode, reasonPhrase, headers, body, expires, forced);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not read response cache file for " + key, e);
+            removeFromDisk(key);
+            return null;
+        }
+        finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        Long size = diskEntries.remove(key);
+        if (size != null) {
+            diskSize -= size.longValue();
+            if (!getCacheFile(key).delete()) {
+                LOGGER.debug("Could not delete response cache file for {}", key);
+            }
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /** A cached HTTP response. */
+    public static class Entry {
+
+        private final int statusCode;
+
+        private final String reasonPhrase;
+
+        private final Header[] headers;
+
+        private final byte[] body;
+
+        private final boolean forced;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private volatile long expires;
+
+        Entry(int statusCode, String reasonPhrase, Header[] headers, byte[] body, long expires, boolean forced) {
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = headers;
+            this.body = body;
+            this.expires = expires;
+            this.forced = forced;
+            this.etag = getHeaderValue(headers, "ETag");
+            this.lastModified = getHeaderValue(headers, "Last-Modified");
+        }
+
+        /** @return <code>true</code> if this entry may be served without revalidation. */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        /** Writes this entry to a response to the given request. If the request contains an <code>If-None-Match</code> header
+         * matching the entry's ETag, a <code>304 Not Modified</code> response without body is created.
+         * @param request the request of the client.
+         * @param response the response to send to the client. */
+        public void writeTo(HttpRequest request, HttpResponse response) {
+            Header ifNoneMatch = request.getFirstHeader("If-None-Match");
+            if (etag != null && ifNoneMatch != null && ifNoneMatch.getValue().contains(etag)) {
+                response.setStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+                response.setHeaders(headers);
+                response.removeHeaders("Content-Length");
+                response.removeHeaders("Content-Type");
+                response.removeHeaders("Content-Encoding");
+                response.setEntity(null);
+                return;
+            }
+            response.setStatusLine(HttpVersion.HTTP_1_1, statusCode, reasonPhrase);
+            response.setHeaders(headers);
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            Header contentType = response.getFirstHeader("Content-Type");
+            entity.setContentType(contentType);
+            entity.setContentEncoding(response.getFirstHeader("Content-Encoding"));
+            response.setEntity(entity);
+        }
+
+        private static String getHeaderValue(Header[] headers, String name) {
+            for (Header header : headers) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
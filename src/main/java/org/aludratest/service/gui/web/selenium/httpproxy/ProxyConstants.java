@@ -23,4 +23,6 @@ public interface ProxyConstants {
     public static final String HTTP_IN_CONN = "http.proxy.in-conn";
     public static final String HTTP_OUT_CONN = "http.proxy.out-conn";
     public static final String HTTP_CONN_KEEPALIVE = "http.proxy.conn-keepalive";
+    public static final String HTTP_REQUEST_ACTIVE = "http.proxy.request-active";
+    public static final String HTTP_TRAFFIC_ENTRY = "http.proxy.traffic-entry";
 }
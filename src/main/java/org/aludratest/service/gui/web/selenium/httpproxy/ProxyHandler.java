@@ -17,6 +17,8 @@ package org.aludratest.service.gui.web.selenium.httpproxy;
 
 import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_CONN_KEEPALIVE;
 import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_OUT_CONN;
+import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_REQUEST_ACTIVE;
+import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_TRAFFIC_ENTRY;
 
 import java.io.IOException;
 
@@ -27,12 +29,14 @@ import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
 import org.apache.http.protocol.HttpProcessor;
 import org.apache.http.protocol.HttpRequestExecutor;
 import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,16 +52,48 @@ public class ProxyHandler implements HttpRequestHandler {
     private final HttpProcessor httpproc;
     private final HttpRequestExecutor httpexecutor;
     private final ConnectionReuseStrategy connStrategy;
+    private final AuthenticatingHttpProxy owner;
 
     public ProxyHandler(HttpHost target, HttpProcessor httpproc, HttpRequestExecutor httpexecutor) {
+        this(target, httpproc, httpexecutor, null);
+    }
+
+    /** Creates a handler which uses the per-proxy settings (e.g. the response cache) of the given owner. */
+    public ProxyHandler(HttpHost target, HttpProcessor httpproc, HttpRequestExecutor httpexecutor, AuthenticatingHttpProxy owner) {
         this.target = target;
         this.httpproc = httpproc;
         this.httpexecutor = httpexecutor;
         this.connStrategy = DefaultConnectionReuseStrategy.INSTANCE;
+        this.owner = owner;
     }
 
     public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException, IOException {
+        // the request is finished by the RequestProcessorThread after the response has been sent
+        TrafficCapture.Entry trafficEntry = null;
+        if (owner != null) {
+            owner.requestStarted();
+            context.setAttribute(HTTP_REQUEST_ACTIVE, Boolean.TRUE);
+            TrafficCapture capture = owner.getTrafficCapture();
+            if (capture != null) {
+                trafficEntry = capture.startEntry(this.target, request);
+                context.setAttribute(HTTP_TRAFFIC_ENTRY, trafficEntry);
+            }
+        }
+
+        String source = null;
+        try {
+            source = forward(request, response, context);
+        }
+        finally {
+            if (trafficEntry != null) {
+                trafficEntry.responseReady(response, source);
+            }
+        }
+    }
 
+    /** Forwards the request to the target server, or answers it from a request rule or the response cache.
+     * @return a short description of the response source if the request has not been forwarded, <code>null</code> otherwise */
+    private String forward(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException, IOException {
         HttpClientConnection conn = (HttpClientConnection) context.getAttribute(HTTP_OUT_CONN);
 
         context.setAttribute(HttpCoreContext.HTTP_CONNECTION, conn);
@@ -82,9 +118,62 @@ public class ProxyHandler implements HttpRequestHandler {
             }
         }
 
+        // apply blocking, stubbing and delaying rules
+        RequestRule rule = (owner != null ? owner.findRequestRule(request.getRequestLine().getUri()) : null);
+        if (rule != null) {
+            LOGGER.debug("Applying request rule " + rule);
+            if (rule.getAction() == RequestRule.Action.DELAY) {
+                try {
+                    Thread.sleep(rule.getDelayMillis());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else {
+                rule.writeTo(response);
+                this.httpexecutor.postProcess(response, this.httpproc, context);
+                LOGGER.debug("<< Rule response: " + response.getStatusLine());
+                context.setAttribute(HTTP_CONN_KEEPALIVE, Boolean.valueOf(this.connStrategy.keepAlive(response, context)));
+                return "rule " + rule;
+            }
+        }
+
+        // serve from the shared response cache, if possible
+        HttpResponseCache cache = (owner != null ? owner.getResponseCache() : null);
+        String cacheKey = null;
+        HttpResponseCache.Entry cachedEntry = null;
+        boolean revalidating = false;
+        if (cache != null && cache.isCacheable(request)) {
+            cacheKey = HttpResponseCache.createKey(this.target, request, owner.getCustomRequestHeaderNames());
+            cachedEntry = cache.lookup(cacheKey);
+            if (cachedEntry != null && cachedEntry.isFresh()) {
+                this.httpexecutor.postProcess(response, this.httpproc, context);
+                cachedEntry.writeTo(request, response);
+                LOGGER.debug("<< Cached response: " + response.getStatusLine());
+                context.setAttribute(HTTP_CONN_KEEPALIVE, Boolean.valueOf(this.connStrategy.keepAlive(response, context)));
+                return "cache";
+            }
+            revalidating = (cachedEntry != null && cache.addValidators(request, cachedEntry));
+        }
+
         HttpResponse targetResponse = this.httpexecutor.execute(request, conn, context);
         this.httpexecutor.postProcess(response, this.httpproc, context);
 
+        if (cacheKey != null) {
+            if (revalidating && targetResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(targetResponse.getEntity());
+                cache.revalidated(cacheKey, cachedEntry, targetResponse);
+                // validators have been added by the proxy, so the client expects the full response
+                request.removeHeaders("If-None-Match");
+                cachedEntry.writeTo(request, response);
+                LOGGER.debug("<< Revalidated cached response: " + response.getStatusLine());
+                context.setAttribute(HTTP_CONN_KEEPALIVE, Boolean.valueOf(this.connStrategy.keepAlive(response, context)));
+                return "revalidated cache";
+            }
+            cache.store(cacheKey, request, targetResponse);
+        }
+
         // Remove hop-by-hop headers
         /*
         targetResponse.removeHeaders(HTTP.CONTENT_LEN);
@@ -103,6 +192,7 @@ public class ProxyHandler implements HttpRequestHandler {
 
         boolean keepalive = this.connStrategy.keepAlive(response, context);
         context.setAttribute(HTTP_CONN_KEEPALIVE, Boolean.valueOf(keepalive));
+        return null;
     }
 
 }
@@ -18,6 +18,8 @@ package org.aludratest.service.gui.web.selenium.httpproxy;
 import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_CONN_KEEPALIVE;
 import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_IN_CONN;
 import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_OUT_CONN;
+import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_REQUEST_ACTIVE;
+import static org.aludratest.service.gui.web.selenium.httpproxy.ProxyConstants.HTTP_TRAFFIC_ENTRY;
 
 import java.io.IOException;
 
@@ -32,10 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Processes a single HTTP request.
+ * Processes the HTTP requests of a single client connection. Executed by the worker pool of the
+ * {@link AuthenticatingHttpProxy}, which tracks all open connections to be able to close them on shutdown.
  * @author Volker Bergmann
  */
-public class RequestProcessorThread extends Thread {
+public class RequestProcessorThread implements Runnable {
 
     /** The logger of the class. */
     private static final Logger LOGGER = LoggerFactory.getLogger(RequestProcessorThread.class);
@@ -56,7 +59,23 @@ public class RequestProcessorThread extends Thread {
         this.outconn = outconn;
     }
 
-    /** The {@link Thread}'s worker method which processes the request. */
+    /** Closes the client and server connections, interrupting any blocking read of the worker thread. */
+    public void shutdown() {
+        try {
+            this.inconn.shutdown();
+        }
+        catch (IOException ignore) {
+            // ignore possible exceptions
+        }
+        try {
+            this.outconn.shutdown();
+        }
+        catch (IOException ignore) {
+            // ignore possible exceptions
+        }
+    }
+
+    /** The worker method which processes the requests of the connection. */
     @Override
     public void run() {
         LOGGER.debug("New request processor thread");
@@ -79,7 +98,19 @@ public class RequestProcessorThread extends Thread {
                 }
                 LOGGER.debug("Handling request");
 
-                this.httpservice.handleRequest(this.inconn, context);
+                try {
+                    this.httpservice.handleRequest(this.inconn, context);
+                }
+                finally {
+                    if (context.removeAttribute(HTTP_REQUEST_ACTIVE) != null) {
+                        owner.requestFinished();
+                    }
+                    TrafficCapture.Entry trafficEntry = (TrafficCapture.Entry) context.removeAttribute(HTTP_TRAFFIC_ENTRY);
+                    TrafficCapture capture = owner.getTrafficCapture();
+                    if (trafficEntry != null && capture != null) {
+                        capture.add(trafficEntry);
+                    }
+                }
 
                 if (!keepAlive) {
                     this.outconn.close();
@@ -99,16 +130,8 @@ public class RequestProcessorThread extends Thread {
         } catch (HttpException ex) {
             LOGGER.error("Unrecoverable HTTP protocol violation: " + ex.getMessage());
         } finally {
-            try {
-                this.inconn.shutdown();
-            } catch (IOException ignore) {
-                // ignore possible exceptions
-            }
-            try {
-                this.outconn.shutdown();
-            } catch (IOException ignore) {
-                // ignore possible exceptions
-            }
+            shutdown();
+            owner.connectionClosed(this);
             LOGGER.debug("Finished connection thread");
         }
     }
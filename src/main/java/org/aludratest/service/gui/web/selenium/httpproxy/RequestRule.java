@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import java.util.regex.Pattern;
+
+import org.aludratest.util.DataUtil;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/** Rule for the {@link AuthenticatingHttpProxy} which blocks, stubs or delays all requests whose URI (path and query, as sent
+ * to the proxy) matches a regular expression. Instances are created using the static factory methods.
+ * @see AuthenticatingHttpProxy#addRequestRule(RequestRule) */
+public final class RequestRule {
+
+    /** The possible actions of a rule. */
+    public enum Action {
+        /** The request is not forwarded, and an empty <code>204 No Content</code> response is returned. */
+        BLOCK,
+        /** The request is not forwarded, and a canned response is returned. */
+        STUB,
+        /** The request is forwarded after a delay. */
+        DELAY
+    }
+
+    private final Pattern uriPattern;
+
+    private final Action action;
+
+    private final int statusCode;
+
+    private final String contentType;
+
+    private final byte[] body;
+
+    private final long delayMillis;
+
+    private RequestRule(String uriPattern, Action action, int statusCode, String contentType, byte[] body, long delayMillis) {
+        this.uriPattern = Pattern.compile(uriPattern);
+        this.action = action;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.body = body;
+        this.delayMillis = delayMillis;
+    }
+
+    /** Creates a rule which answers matching requests with <code>204 No Content</code>.
+     * @param uriPattern regular expression for the request URIs to block.
+     * @return the rule. */
+    public static RequestRule block(String uriPattern) {
+        return new RequestRule(uriPattern, Action.BLOCK, HttpStatus.SC_NO_CONTENT, null, null, 0);
+    }
+
+    /** Creates a rule which answers matching requests with a canned response.
+     * @param uriPattern regular expression for the request URIs to stub.
+     * @param statusCode the HTTP status code of the response.
+     * @param contentType the content type of the response, e.g. <code>text/javascript</code>.
+     * @param body the body of the response, or <code>null</code> for an empty response.
+     * @return the rule. */
+    public static RequestRule stub(String uriPattern, int statusCode, String contentType, String body) {
+        return new RequestRule(uriPattern, Action.STUB, statusCode, contentType,
+                body == null ? null : body.getBytes(DataUtil.UTF_8), 0);
+    }
+
+    /** Creates a rule which forwards matching requests after a delay, to simulate latency.
+     * @param uriPattern regular expression for the request URIs to delay.
+     * @param delayMillis the delay, in milliseconds.
+     * @return the rule. */
+    public static RequestRule delay(String uriPattern, long delayMillis) {
+        return new RequestRule(uriPattern, Action.DELAY, 0, null, null, delayMillis);
+    }
+
+    /** @return the {@link #action} of this rule */
+    public Action getAction() {
+        return action;
+    }
+
+    /** @return the {@link #delayMillis} of this rule */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /** Checks if this rule applies to a request URI.
+     * @param uri the request URI, as sent to the proxy.
+     * @return <code>true</code> if the whole URI matches the pattern of this rule. */
+    public boolean matches(String uri) {
+        return uriPattern.matcher(uri).matches();
+    }
+
+    /** Writes the response of a {@link Action#BLOCK} or {@link Action#STUB} rule.
+     * @param response the response to send to the client. */
+    public void writeTo(HttpResponse response) {
+        response.setStatusCode(statusCode);
+        if (body != null) {
+            ContentType type = (contentType == null ? ContentType.DEFAULT_TEXT : ContentType.parse(contentType));
+            response.setEntity(new ByteArrayEntity(body, type));
+        }
+        else {
+            response.setEntity(null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return action + " " + uriPattern.pattern() + (action == Action.DELAY ? " (" + delayMillis + " ms)" : "");
+    }
+
+}
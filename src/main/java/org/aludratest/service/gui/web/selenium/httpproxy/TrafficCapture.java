@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHeader;
+
+/** Records metadata and timings of the requests processed by an {@link AuthenticatingHttpProxy} in a fixed-size ring buffer,
+ * and writes them in HAR (HTTP Archive) format. Recording is lock-free: concurrent request threads only claim a slot using an
+ * atomic counter, and the oldest entries are overwritten when the buffer is full. Request and response bodies are not
+ * recorded, so memory usage is bounded by the capacity. The values of headers carrying credentials or session cookies, like
+ * the <code>Authorization</code> header injected by the proxy, are redacted when the request is recorded. */
+public class TrafficCapture {
+
+    private static final String HAR_VERSION = "1.2";
+
+    private static final String REDACTED = "[redacted]";
+
+    private static final String[] SENSITIVE_HEADERS = { "Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie",
+            "Set-Cookie2" };
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final AtomicLong nextIndex = new AtomicLong();
+
+    /** Creates a new capture.
+     * @param capacity the maximum number of requests to keep. */
+    public TrafficCapture(int capacity) {
+        this.entries = new AtomicReferenceArray<Entry>(capacity);
+    }
+
+    /** Starts recording a request. The entry is only added to the buffer by {@link #add(Entry)} when the request is finished.
+     * @param target the server to which the request is forwarded.
+     * @param request the request.
+     * @return the entry for the request. */
+    public Entry startEntry(HttpHost target, HttpRequest request) {
+        return new Entry(target, request);
+    }
+
+    /** Adds a finished request to the buffer, overwriting the oldest entry if the buffer is full.
+     * @param entry the entry to add. */
+    public void add(Entry entry) {
+        entry.finish();
+        int slot = (int) (nextIndex.getAndIncrement() % entries.length());
+        entries.set(slot, entry);
+    }
+
+    /** Removes all recorded entries. */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /** @return <code>true</code> if no request has been recorded yet. */
+    public boolean isEmpty() {
+        return nextIndex.get() == 0;
+    }
+
+    /** Writes all buffered entries, oldest first, as a HAR log to the given writer.
+     * @param writer the writer to write to.
+     * @throws IOException if writing fails. */
+    public void writeHar(Writer writer) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        writer.write("{\"log\":{\"version\":\"" + HAR_VERSION + "\",\"creator\":{\"name\":\"AludraTest Selenium Service\",\"version\":\"\"},"
+                + "\"entries\":[");
+        long end = nextIndex.get();
+        long start = Math.max(0, end - entries.length());
+        boolean first = true;
+        for (long i = start; i < end; i++) {
+            Entry entry = entries.get((int) (i % entries.length()));
+            if (entry != null) {
+                if (!first) {
+                    writer.write(',');
+                }
+                entry.writeHar(writer, dateFormat);
+                first = false;
+            }
+        }
+        writer.write("]}}");
+        writer.flush();
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("\"\"");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", Integer.valueOf(c)));
+                    }
+                    else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /** Copies headers, replacing the values of headers carrying credentials or session cookies.
+     * @param headers the headers to copy, or <code>null</code>.
+     * @return the copied headers, or <code>null</code>. */
+    static Header[] redact(Header[] headers) {
+        if (headers == null) {
+            return null;
+        }
+        Header[] result = new Header[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            result[i] = (isSensitive(headers[i].getName()) ? new BasicHeader(headers[i].getName(), REDACTED) : headers[i]);
+        }
+        return result;
+    }
+
+    private static boolean isSensitive(String headerName) {
+        for (String sensitiveHeader : SENSITIVE_HEADERS) {
+            if (sensitiveHeader.equalsIgnoreCase(headerName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeHeaders(Writer writer, Header[] headers) throws IOException {
+        writer.write('[');
+        for (int i = 0; headers != null && i < headers.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"name\":");
+            writeString(writer, headers[i].getName());
+            writer.write(",\"value\":");
+            writeString(writer, headers[i].getValue());
+            writer.write('}');
+        }
+        writer.write(']');
+    }
+
+    /** Metadata and timings of a single request. */
+    public static class Entry {
+
+        private final long startedTime;
+
+        private final long startNanos;
+
+        private final String method;
+
+        private final String url;
+
+        private final String httpVersion;
+
+        private final Header[] requestHeaders;
+
+        private long responseNanos;
+
+        private long finishNanos;
+
+        private int status;
+
+        private String statusText;
+
+        private String responseHttpVersion;
+
+        private Header[] responseHeaders;
+
+        private long contentSize = -1;
+
+        private String mimeType;
+
+        private String comment;
+
+        Entry(HttpHost target, HttpRequest request) {
+            this.startedTime = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+            this.method = request.getRequestLine().getMethod();
+            this.url = target.toURI() + request.getRequestLine().getUri();
+            this.httpVersion = request.getRequestLine().getProtocolVersion().toString();
+            this.requestHeaders = redact(request.getAllHeaders());
+        }
+
+        /** Records the response to send to the client.
+         * @param response the response.
+         * @param comment a comment about the response source, e.g. <code>cache</code>, or <code>null</code>. */
+        public void responseReady(HttpResponse response, String comment) {
+            this.responseNanos = System.nanoTime();
+            this.status = response.getStatusLine().getStatusCode();
+            this.statusText = response.getStatusLine().getReasonPhrase();
+            this.responseHttpVersion = response.getStatusLine().getProtocolVersion().toString();
+            this.responseHeaders = redact(response.getAllHeaders());
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                this.contentSize = entity.getContentLength();
+                this.mimeType = (entity.getContentType() != null ? entity.getContentType().getValue() : null);
+            }
+            this.comment = comment;
+        }
+
+        void finish() {
+            this.finishNanos = System.nanoTime();
+            if (this.responseNanos == 0) {
+                this.responseNanos = this.finishNanos;
+            }
+        }
+
+        void writeHar(Writer writer, SimpleDateFormat dateFormat) throws IOException {
+            long wait = TimeUnit.NANOSECONDS.toMillis(responseNanos - startNanos);
+            long receive = TimeUnit.NANOSECONDS.toMillis(finishNanos - responseNanos);
+            writer.write("{\"startedDateTime\":");
+            writeString(writer, dateFormat.format(new Date(startedTime)));
+            writer.write(",\"time\":" + (wait + receive));
+            writer.write(",\"request\":{\"method\":");
+            writeString(writer, method);
+            writer.write(",\"url\":");
+            writeString(writer, url);
+            writer.write(",\"httpVersion\":");
+            writeString(writer, httpVersion);
+            writer.write(",\"cookies\":[],\"headers\":");
+            writeHeaders(writer, requestHeaders);
+            writer.write(",\"queryString\":[],\"headersSize\":-1,\"bodySize\":-1}");
+            writer.write(",\"response\":{\"status\":" + status + ",\"statusText\":");
+            writeString(writer, statusText);
+            writer.write(",\"httpVersion\":");
+            writeString(writer, responseHttpVersion);
+            writer.write(",\"cookies\":[],\"headers\":");
+            writeHeaders(writer, responseHeaders);
+            writer.write(",\"content\":{\"size\":" + contentSize + ",\"mimeType\":");
+            writeString(writer, mimeType);
+            writer.write("},\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":" + contentSize + "}");
+            writer.write(",\"cache\":{},\"timings\":{\"send\":0,\"wait\":" + wait + ",\"receive\":" + receive + "}");
+            if (comment != null) {
+                writer.write(",\"comment\":");
+                writeString(writer, comment);
+            }
+            writer.write('}');
+        }
+
+    }
+
+}
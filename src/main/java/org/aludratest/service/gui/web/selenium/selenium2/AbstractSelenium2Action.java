@@ -73,9 +73,8 @@ public abstract class AbstractSelenium2Action implements Action {
             return Collections.<Attachment> singletonList(new BinaryAttachment(label, data, suffix));
         }
         if ("Active Window Screenshot".equals(label)) {
-            String contents = object.toString();
-            byte[] data = Base64.decodeBase64(contents);
-            return Collections.<Attachment> singletonList(new BinaryAttachment(label, data, "png"));
+            return Collections.<Attachment> singletonList(wrapper.getScreenshotStore().createAttachment(label, label,
+                    object.toString(), "png"));
         }
 
         throw new TechnicalException("Unsupported attachment: " + label);
@@ -87,6 +86,10 @@ public abstract class AbstractSelenium2Action implements Action {
         List<Attachment> attachments = new ArrayList<Attachment>(2);
         attachments.addAll(takeWindowsScreenShots());
         attachments.add(saveSource());
+        Attachment traffic = saveNetworkTraffic();
+        if (traffic != null) {
+            attachments.add(traffic);
+        }
         return attachments;
     }
 
@@ -94,6 +97,12 @@ public abstract class AbstractSelenium2Action implements Action {
     // helper methods for child classes ----------------------------------------
     protected List<Attachment> takeWindowsScreenShots() {
         try {
+            if ("element".equals(getConfiguration().getFailureScreenshotScope())) {
+                Attachment elementScreenshot = wrapper.getLastElementScreenshot();
+                if (elementScreenshot != null) {
+                    return Collections.singletonList(elementScreenshot);
+                }
+            }
             return wrapper.getWindowsScreenshots();
         }
         catch (Exception e) { // NOSONAR
@@ -101,6 +110,19 @@ public abstract class AbstractSelenium2Action implements Action {
         }
     }
 
+    /** Saves the HTTP requests recorded by the local proxy, if traffic capture is enabled.
+     * @return Attachment which contains the recorded requests in HAR format, or <code>null</code> if no traffic has been
+     *         recorded */
+    protected Attachment saveNetworkTraffic() {
+        try {
+            return wrapper.getNetworkTraffic();
+        }
+        catch (Exception e) { // NOSONAR
+            logger.warn("Could not save network traffic", e);
+            return null;
+        }
+    }
+
     /**
      * Saves the HTML sources of the current web page.
      * @return Attachment which contains the source code
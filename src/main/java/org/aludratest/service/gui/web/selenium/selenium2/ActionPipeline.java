@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.aludratest.service.locator.element.GUIElementLocator;
+
+/** A sequence of interactions and completion conditions, see {@link Selenium2Interaction#runPipeline(ActionPipeline, int)}.
+ * The precondition of each interaction, i.e. the presence, visibility and (where required) enabled state of its element, is
+ * awaited in the browser, which reacts to DOM mutations instead of polling at a fixed interval. Steps are added using the
+ * fluent methods, e.g.
+ * <code>new ActionPipeline().click(nextButton).awaitElement(summaryPanel).type(commentField, "OK").click(finishButton)</code>. */
+public final class ActionPipeline {
+
+    /** The kinds of steps. */
+    public enum Kind {
+        /** Clicks an element. */
+        CLICK,
+        /** Double-clicks an element. */
+        DOUBLE_CLICK,
+        /** Moves the mouse over an element. */
+        HOVER,
+        /** Types text into an input field. */
+        TYPE,
+        /** Waits for an element to be present and visible. */
+        AWAIT_ELEMENT,
+        /** Waits for a script to return a truthy value. */
+        AWAIT_SCRIPT
+    }
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /** Adds a click on an element.
+     * @param locator the locator of the element.
+     * @return this instance. */
+    public ActionPipeline click(GUIElementLocator locator) {
+        return add(Kind.CLICK, locator, null);
+    }
+
+    /** Adds a double click on an element.
+     * @param locator the locator of the element.
+     * @return this instance. */
+    public ActionPipeline doubleClick(GUIElementLocator locator) {
+        return add(Kind.DOUBLE_CLICK, locator, null);
+    }
+
+    /** Adds moving the mouse over an element.
+     * @param locator the locator of the element.
+     * @return this instance. */
+    public ActionPipeline hover(GUIElementLocator locator) {
+        return add(Kind.HOVER, locator, null);
+    }
+
+    /** Adds typing into an input field, which is cleared first.
+     * @param locator the locator of the input field.
+     * @param text the text to type.
+     * @return this instance. */
+    public ActionPipeline type(GUIElementLocator locator, String text) {
+        return add(Kind.TYPE, locator, text == null ? "" : text);
+    }
+
+    /** Adds waiting for an element to be present and visible, e.g. as completion condition of the previous interaction.
+     * @param locator the locator of the element.
+     * @return this instance. */
+    public ActionPipeline awaitElement(GUIElementLocator locator) {
+        return add(Kind.AWAIT_ELEMENT, locator, null);
+    }
+
+    /** Adds waiting for a condition evaluated in the browser, e.g. as completion condition of the previous interaction.
+     * @param scriptBody the body of a JavaScript function returning a truthy value when the condition is fulfilled, e.g.
+     *            <code>return !document.querySelector('.loading');</code>. The pipeline fails with an AutomationException if
+     *            the body cannot be compiled, e.g. because the content security policy of the page forbids eval, or if it
+     *            still throws an error when the timeout elapses.
+     * @return this instance. */
+    public ActionPipeline awaitScript(String scriptBody) {
+        return add(Kind.AWAIT_SCRIPT, null, scriptBody);
+    }
+
+    /** @return the steps, in the order of execution */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    private ActionPipeline add(Kind kind, GUIElementLocator locator, String argument) {
+        steps.add(new Step(kind, locator, argument));
+        return this;
+    }
+
+    /** A step of an {@link ActionPipeline}. */
+    public static final class Step {
+
+        private final Kind kind;
+
+        private final GUIElementLocator locator;
+
+        private final String argument;
+
+        private Step(Kind kind, GUIElementLocator locator, String argument) {
+            this.kind = kind;
+            this.locator = locator;
+            this.argument = argument;
+        }
+
+        /** @return the {@link #kind} of this step */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return the {@link #locator} of this step, or <code>null</code> for {@link Kind#AWAIT_SCRIPT} */
+        public GUIElementLocator getLocator() {
+            return locator;
+        }
+
+        /** @return the text to type, the script body to evaluate, or <code>null</code> */
+        public String getArgument() {
+            return argument;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + (locator != null ? locator : argument);
+        }
+
+    }
+
+}
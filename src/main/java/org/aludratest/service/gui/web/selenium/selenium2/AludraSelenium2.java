@@ -42,20 +42,46 @@ import org.slf4j.LoggerFactory;
         @ConfigProperty(name = "highlight.elements", type = boolean.class, description = "Activates or deactivates highlighting of web GUI elements currently being used.", defaultValue = "true"),
         @ConfigProperty(name = "pause.between.retries", type = int.class, description = "If execution of an action fails, Selenium has to pause until it retries to execute this action again. This value specifies how long the program will pause, in milliseconds.", defaultValue = "100"),
         @ConfigProperty(name = "screenshot.attachment.extension", type = String.class, description = "The file extension to use for screenshot attachments.", defaultValue = "png"),
+        @ConfigProperty(name = "screenshot.deduplication", type = boolean.class, description = "If true, a screenshot which is identical to the previous screenshot of the same window is replaced by a small text attachment referring to the previous one.", defaultValue = "false", required = false),
+        @ConfigProperty(name = "screenshot.failure.scope", type = String.class, description = "The scope of the screenshots attached to failed steps. element captures only the element used by the failed operation, extended by screenshot.element.margin, and falls back to windows if there is no such element. windows captures all open windows.", defaultValue = "element", required = false),
+        @ConfigProperty(name = "screenshot.element.margin", type = int.class, description = "The number of pixels around an element to include in element screenshots.", defaultValue = "50", required = false),
         @ConfigProperty(name = "page.source.attachment.extension", type = String.class, description = "The file extension to use for HTML page source attachments.", defaultValue = "html"),
+        @ConfigProperty(name = "page.source.compression", type = boolean.class, description = "If true, HTML page source attachments are gzip compressed, and .gz is appended to their file extension.", defaultValue = "false", required = false),
+        @ConfigProperty(name = "page.source.max.size", type = int.class, description = "The maximum size of HTML page source attachments, in units of 1024 characters. Longer page sources are truncated, and a marker comment is appended. 0 means no limit.", defaultValue = "0", required = false),
+        @ConfigProperty(name = "page.source.strip.scripts", type = boolean.class, description = "If true, the contents of inline script and style elements are removed from HTML page source attachments.", defaultValue = "false", required = false),
         @ConfigProperty(name = "task.start.timeout", type = int.class, description = "The time the Selenium service waits for an activity to start, in milliseconds.", defaultValue = "2000"),
         @ConfigProperty(name = "task.completion.timeout", type = int.class, description = "The time the Selenium service waits for an activity to finish, in milliseconds.", defaultValue = "45000"),
         @ConfigProperty(name = "task.polling.interval", type = int.class, description = "The polling interval for checking task states, in milliseconds.", defaultValue = "1000"),
         @ConfigProperty(name = "use.local.proxy", type = boolean.class, description = "If true, a local HTTP proxy will be used to allow adding custom HTTP headers. If set to false, no proxy will be used, but the method addCustomHttpHeaderCommand will have no effect.", defaultValue = "true"),
         @ConfigProperty(name = "proxy.port.min", type = int.class, description = "The lowest port number to use for the authenticating proxy.", defaultValue = "19600"),
+        @ConfigProperty(name = "proxy.cache.enabled", type = boolean.class, description = "If true, the local proxy caches responses to GET requests (honouring Cache-Control, Expires and ETag headers) in a cache which is shared by all proxies of the JVM. Only has effect if use.local.proxy is true.", defaultValue = "false", required = false),
+        @ConfigProperty(name = "proxy.cache.max.size", type = int.class, description = "The maximum size of the in-memory proxy response cache, in megabytes.", defaultValue = "64", required = false),
+        @ConfigProperty(name = "proxy.cache.forced.patterns", type = String.class, description = "Semicolon-separated list of regular expressions for request paths (e.g. /static/.*\\.css) whose responses are cached by the proxy regardless of their caching headers.", required = false),
+        @ConfigProperty(name = "proxy.cache.forced.max.age", type = int.class, description = "The time in seconds for which responses to request paths matching proxy.cache.forced.patterns are considered fresh.", defaultValue = "3600", required = false),
+        @ConfigProperty(name = "proxy.cache.disk.dir", type = String.class, description = "Directory to move proxy response cache entries to when they are evicted from memory. If not set, no disk cache is used.", required = false),
+        @ConfigProperty(name = "proxy.cache.disk.max.size", type = int.class, description = "The maximum size of the disk tier of the proxy response cache, in megabytes.", defaultValue = "256", required = false),
+        @ConfigProperty(name = "proxy.traffic.capture.size", type = int.class, description = "The number of most recent HTTP requests whose metadata and timings the local proxy keeps per session. On failures, they are attached as HAR file. 0 disables the capture.", defaultValue = "0", required = false),
+        @ConfigProperty(name = "proxy.max.threads", type = int.class, description = "The maximum number of client connections the local proxy processes concurrently. Further connections are closed immediately.", defaultValue = "32", required = false),
+        @ConfigProperty(name = "proxy.shutdown.timeout", type = int.class, description = "The number of milliseconds the local proxy waits for running requests to finish when the session is closed, before all its connections are closed.", defaultValue = "2000", required = false),
         @ConfigProperty(name = "driver", type = String.class, description = "The Selenium 2 driver name. Have a look at the org.aludratest.service.gui.web.selenium.selenium2.Drivers enumeration for potential values", defaultValue = "FIREFOX"),
         @ConfigProperty(name = "use.remotedriver", type = boolean.class, description = "If true, use Selenium Remote Driver (talk to Selenium RC), otherwise, directly use driver class.", defaultValue = "false"),
         @ConfigProperty(name = "browser.arguments", type = String.class, description = "Space-separated list of arguments to pass to the browser. Currently, only the CHROME driver supports additional arguments.", required = false),
         @ConfigProperty(name = "tcp.timeout", type = int.class, description = "The TCP timeout to use. If the Selenium Client does not respond within this period of time, the request is aborted, and a SocketTimeoutException will be raised.", required = false, defaultValue = "5000"),
+        @ConfigProperty(name = "type.clear.strategy", type = String.class, description = "How input fields are cleared before typing into them. select.all deletes the content selected with the select-all key chord, script resets the value by script and dispatches input and change events, backspace sends one backspace per character. auto tries select.all, then script, then backspace on the first non-empty field of a session, and keeps the first one which clears the field. Fields which are not empty after select.all or script are cleared with backspace.", defaultValue = "auto", required = false),
         @ConfigProperty(name = "type.safemode", type = boolean.class, description = "If true, elements are clicked, and active element is used for typing (instead of directly sending keys to element).", defaultValue = "false", required = false),
         @ConfigProperty(name = "zindex.check.enabled", type = boolean.class, description = "If true, a z-index check is performed before any element interaction is performed. This ensures the element is 'in foreground'. As this can cause performance decrease, you can disable it, but you may miss errors where web elements are covered by other elements.", defaultValue = "true", required = false),
         @ConfigProperty(name = "phantomjs.init.script", type = String.class, description = "The path and name of a JavaScript file with initialization code for PhantomJS (see PhantomJS API for possible operations).", required = false),
-        @ConfigProperty(name = "auto.wait.for.ajax.framework", type = String.class, description = "The name of an AJAX framework to check for pending operations automatically when checking if SUT is busy. Supported framework names are jquery,primefaces,icefaces,dojoPre17. If not set, no automatic check for AJAX operations is performed.", required = false),
+        @ConfigProperty(name = "auto.wait.for.ajax.framework", type = String.class, description = "The name of an AJAX framework to check for pending operations automatically when checking if SUT is busy. Supported framework names are jquery,primefaces,icefaces,dojoPre17,network. The network mode uses the local proxy to wait until no HTTP request has been active for network.idle.time milliseconds. If not set, no automatic check for AJAX operations is performed.", required = false),
+        @ConfigProperty(name = "network.idle.time", type = int.class, description = "Number of milliseconds without any HTTP request activity on the local proxy after which the AUT is considered idle. Only used if auto.wait.for.ajax.framework is network.", defaultValue = "500", required = false),
+        @ConfigProperty(name = "xpath.document.cache.max.size", type = int.class, description = "The maximum estimated heap size, in MB, of the HTML documents cached for XPath evaluations. The cache is shared by all sessions.", defaultValue = "256", required = false),
+        @ConfigProperty(name = "xpath.document.cache.soft.values", type = boolean.class, description = "If true, the documents cached for XPath evaluations may be reclaimed by the garbage collector under memory pressure.", defaultValue = "false", required = false),
+        @ConfigProperty(name = "xpath.streaming.threshold", type = int.class, description = "The minimum size of a page, in units of 1024 characters, from which on simple XPaths (child and descendant steps with attribute predicates, text(), @attribute and count()) are evaluated in a single pass over the page source instead of building and caching a DOM. The matching nodes are returned as detached copies, without their ancestors, and the page source is expected as serialized by the browser, without the error recovery of the HTML parser. 0 disables streaming evaluation.", defaultValue = "0", required = false),
+        @ConfigProperty(name = "xpath.evaluation.mode", type = String.class, description = "Where XPath evaluations of evalXPath are performed. browser evaluates the XPath in the browser and transfers only the matching nodes, which are detached from their ancestors; if the browser cannot evaluate the XPath, local is used. local transfers the page source and evaluates the XPath in the JVM.", defaultValue = "local", required = false),
+        @ConfigProperty(name = "window.registry.max.age", type = int.class, description = "Number of milliseconds for which the titles and names of windows other than the current one are reused when enumerating windows, instead of switching to each window to query them again. Titles changed by the application within this time are not noticed. 0 queries all windows on every enumeration.", defaultValue = "0", required = false),
+        @ConfigProperty(name = "devtools.port", type = int.class, description = "Port of the DevTools HTTP endpoint of Chromium-based browsers, used to read the titles of all windows with a single request instead of switching to each window. See devtools.host for the host of the endpoint. 0 uses the port of a --remote-debugging-port browser argument, if any.", defaultValue = "0", required = false),
+        @ConfigProperty(name = "devtools.host", type = String.class, description = "Host of the DevTools HTTP endpoint. For remote drivers, this must be the Selenium node running the browser, not the grid hub; if empty, the endpoint is only used for local drivers. Host names are resolved to an IP address, as Chromium rejects DevTools requests with a host name. Only suitable for local drivers or nodes running a single browser at a time.", defaultValue = "", required = false),
+        @ConfigProperty(name = "fast.teardown", type = boolean.class, description = "If true, closing the application under test quits the browser in the background instead of closing its windows one by one, so the test thread does not wait for the browser to shut down.", defaultValue = "false", required = false),
+        @ConfigProperty(name = "quit.timeout", type = int.class, description = "Number of milliseconds after which a browser quit in the background is abandoned and the Selenium host is released anyway. When the JVM exits, it waits for pending quits up to this timeout. Only used if fast.teardown is true.", defaultValue = "30000", required = false),
         @ConfigProperty(name = "type.wait.before.tab", type = int.class, description = "Number of milliseconds to wait before tabbing out of an input component after typing text. This helps with applications doing lots of Javascript stuff after onkeypress etc.", defaultValue = "0", required = false),
         @ConfigProperty(name = "additional.selenium.headers", type = String.class, description = "Semicolon-separated list of Name-Value pairs (with an equal sign between name and value) of additional headers to send to the Selenium server(s) (NOT to the System Under Test!) on session creation ONLY. This can e.g. be used to give AludraTest Cloud Manager additional hints about the request.", defaultValue = "", required = false) })
 public class AludraSelenium2 extends AbstractConfigurableAludraService implements AludraWebGUI {
@@ -98,6 +98,10 @@ public class AludraSeleniumHttpCommandExecutor implements CommandExecutor, Needs
 
     private static final String HEADER_ACM_RETRY = "X-ACM-Retry";
 
+    /** Name of the element screenshot command, which is not part of the Selenium 2 command set, but supported by some drivers.
+     * The parameter <code>id</code> is the ID of the element. */
+    public static final String ELEMENT_SCREENSHOT = "elementScreenshot";
+
     private final HttpHost targetHost;
     private final URL remoteServer;
     private final HttpClient client;
@@ -125,6 +129,7 @@ public class AludraSeleniumHttpCommandExecutor implements CommandExecutor, Needs
         this.additionalHeaders = additionalHeaders;
 
         commandCodec = new JsonHttpCommandCodec();
+        commandCodec.defineCommand(ELEMENT_SCREENSHOT, HttpMethod.GET, "/session/:sessionId/element/:id/screenshot");
         responseCodec = new JsonHttpResponseCodec();
 
         synchronized (AludraSeleniumHttpCommandExecutor.class) {
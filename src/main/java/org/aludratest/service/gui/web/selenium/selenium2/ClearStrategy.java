@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.Locale;
+
+import org.aludratest.exception.AutomationException;
+
+/** The ways of clearing an input field before typing into it. */
+public enum ClearStrategy {
+
+    /** Selects the whole content with the select-all key chord and deletes it, in a single command. */
+    SELECT_ALL,
+
+    /** Resets the value by script, dispatching input and change events. */
+    SCRIPT,
+
+    /** Moves to the end of the content and sends one backspace per character, re-checking the value up to three times. */
+    BACKSPACE;
+
+    /** Parses the configured name of a clear strategy.
+     * @param name the name, e.g. <code>select.all</code>, case insensitive, or <code>auto</code>.
+     * @return the strategy, or <code>null</code> for <code>auto</code>, i.e. if the strategy shall be detected. */
+    public static ClearStrategy forName(String name) {
+        String normalized = name.trim().toUpperCase(Locale.US).replace('.', '_');
+        if ("AUTO".equals(normalized)) {
+            return null;
+        }
+        try {
+            return valueOf(normalized);
+        }
+        catch (IllegalArgumentException e) {
+            throw new AutomationException("Unsupported clear strategy: " + name);
+        }
+    }
+
+}
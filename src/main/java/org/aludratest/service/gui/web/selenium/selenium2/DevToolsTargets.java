@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Reads the titles of all windows of a Chromium-based browser with a single request to the target list of its DevTools HTTP
+ * endpoint, instead of switching to each window. ChromeDriver window handles consist of the prefix <code>CDwindow-</code> and
+ * the DevTools target ID, which is used to map the targets to window handles. If the endpoint cannot be reached, it is not
+ * asked again. The host is resolved to an IP address, as Chromium rejects DevTools requests whose Host header is a name other
+ * than <code>localhost</code>. */
+final class DevToolsTargets {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DevToolsTargets.class);
+
+    private static final String HANDLE_PREFIX = "CDwindow-";
+
+    private static final int TIMEOUT = 2000;
+
+    private final String host;
+
+    private final int port;
+
+    private String listUrl;
+
+    private final CloseableHttpClient client;
+
+    private volatile boolean available = true;
+
+    /** Creates a new instance.
+     * @param host the host of the browser.
+     * @param port the port of the DevTools HTTP endpoint of the browser. */
+    DevToolsTargets(String host, int port) {
+        this.host = host;
+        this.port = port;
+        RequestConfig requestConfig = RequestConfig.custom().setConnectionRequestTimeout(TIMEOUT).setConnectTimeout(TIMEOUT)
+                .setSocketTimeout(TIMEOUT).build();
+        this.client = HttpClients.custom().setDefaultRequestConfig(requestConfig).build();
+    }
+
+    /** Returns the titles of the given windows.
+     * @param handles the handles of the windows.
+     * @return a map from the handles to the titles, omitting windows not found in the target list. Empty if the endpoint is
+     *         not available. */
+    Map<String, String> getTitles(Collection<String> handles) {
+        Map<String, String> result = new HashMap<String, String>();
+        if (!available) {
+            return result;
+        }
+        Map<String, String> titlesByTargetId = new HashMap<String, String>();
+        try {
+            if (listUrl == null) {
+                listUrl = createListUrl(host, port);
+            }
+            HttpGet get = new HttpGet(listUrl);
+            HttpResponse response = client.execute(get);
+            String json = EntityUtils.toString(response.getEntity(), "UTF-8");
+            if (response.getStatusLine().getStatusCode() != 200) {
+                throw new IOException("DevTools endpoint returned status " + response.getStatusLine());
+            }
+            for (Object target : new JsonToBeanConverter().convert(List.class, json)) {
+                Map<?, ?> targetInfo = (Map<?, ?>) target;
+                if ("page".equals(targetInfo.get("type")) && targetInfo.get("id") != null) {
+                    Object title = targetInfo.get("title");
+                    // DevTools reports the URL as title of pages without title, while WebDriver reports an empty title
+                    if (title == null || title.equals(targetInfo.get("url"))) {
+                        title = "";
+                    }
+                    titlesByTargetId.put(targetInfo.get("id").toString(), title.toString());
+                }
+            }
+        }
+        catch (Exception e) {
+            LOGGER.debug("DevTools target list of " + host + ":" + port + " not available; falling back to switching windows", e);
+            available = false;
+            return result;
+        }
+
+        for (String handle : handles) {
+            String targetId = (handle.startsWith(HANDLE_PREFIX) ? handle.substring(HANDLE_PREFIX.length()) : handle);
+            String title = titlesByTargetId.get(targetId);
+            if (title != null) {
+                result.put(handle, title);
+            }
+        }
+        return result;
+    }
+
+    /** Creates the URL of the target list, with the host resolved to an IP address.
+     * @param host the host name or address.
+     * @param port the port.
+     * @return the URL.
+     * @throws IOException if the host cannot be resolved. */
+    static String createListUrl(String host, int port) throws IOException {
+        InetAddress address = InetAddress.getByName(host);
+        String hostAddress = address.getHostAddress();
+        if (address instanceof Inet6Address) {
+            hostAddress = "[" + hostAddress + "]";
+        }
+        return "http://" + hostAddress + ":" + port + "/json/list";
+    }
+
+    /** Releases the resources of this instance. */
+    void close() {
+        try {
+            client.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
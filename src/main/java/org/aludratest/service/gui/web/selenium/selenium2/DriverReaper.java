@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Quits web drivers in the background, so test threads do not have to wait for the browser to shut down. Each quit runs on a
+ * thread of a shared pool; a shared reaper thread abandons quits which do not finish within their timeout. A completion
+ * action, e.g. releasing the Selenium host, runs exactly once after the quit has finished or has been abandoned. All
+ * threads are daemon threads, so pending quits do not keep the JVM alive; instead, a shutdown hook waits for pending quits
+ * until their timeouts have elapsed, so browsers are not left running when the tests end. */
+final class DriverReaper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverReaper.class);
+
+    private static final ExecutorService QUITTERS = Executors.newCachedThreadPool(new DaemonThreadFactory("aludratest-quit-"));
+
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+            "aludratest-quit-reaper-"));
+
+    private static final Set<Completion> PENDING = Collections.newSetFromMap(new ConcurrentHashMap<Completion, Boolean>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                awaitPendingQuits();
+            }
+        }, "aludratest-quit-shutdown"));
+    }
+
+    private DriverReaper() {
+    }
+
+    /** Waits for all pending quits to finish, but not longer than until their timeouts have elapsed. */
+    static void awaitPendingQuits() {
+        List<Completion> pending = new ArrayList<Completion>(PENDING);
+        if (!pending.isEmpty()) {
+            LOGGER.info("Waiting for " + pending.size() + " web driver(s) to quit");
+        }
+        for (Completion completion : pending) {
+            long remaining = completion.deadline - System.currentTimeMillis();
+            try {
+                if (remaining > 0 && !completion.latch.await(remaining, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Web driver did not quit within the timeout; abandoning it");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** Quits a driver in the background.
+     * @param driver the driver to quit.
+     * @param timeout the maximum number of milliseconds to wait for the quit to finish.
+     * @param afterQuit an action to run after the quit has finished or has been abandoned, or <code>null</code>. */
+    static void quit(final WebDriver driver, long timeout, Runnable afterQuit) {
+        final Completion completion = new Completion(afterQuit, System.currentTimeMillis() + timeout);
+        PENDING.add(completion);
+        final Future<?> quit = QUITTERS.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    driver.quit();
+                }
+                catch (Exception e) {
+                    LOGGER.debug("Exception when quitting web driver", e);
+                }
+                finally {
+                    completion.run();
+                }
+            }
+        });
+        REAPER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!quit.isDone()) {
+                    LOGGER.warn("Web driver did not quit within the timeout; abandoning it");
+                    quit.cancel(true);
+                    completion.run();
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Completion implements Runnable {
+
+        private final Runnable action;
+
+        private final long deadline;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Completion(Runnable action, long deadline) {
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            if (done.compareAndSet(false, true)) {
+                try {
+                    if (action != null) {
+                        action.run();
+                    }
+                }
+                catch (RuntimeException e) {
+                    LOGGER.warn("Exception after quitting web driver", e);
+                }
+                finally {
+                    PENDING.remove(this);
+                    latch.countDown();
+                }
+            }
+        }
+
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
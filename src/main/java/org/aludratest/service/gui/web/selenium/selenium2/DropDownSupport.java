@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.locator.option.IndexLocator;
+import org.aludratest.service.locator.option.LabelLocator;
+import org.aludratest.service.locator.option.OptionLocator;
+import org.aludratest.service.util.ServiceUtil;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.support.ui.UnexpectedTagNameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Reads and selects the options of drop down boxes with a single script call each, instead of one remote call per option
+ * like Selenium's {@link org.openqa.selenium.support.ui.Select}. The labels, values and disabled states of the options of a
+ * drop down are kept in a snapshot per element. In the browser, a MutationObserver increments a version of the options on
+ * each change; as long as the version is unchanged, reading the drop down only transfers the indexes of the selected
+ * options, and selecting an option is done without reading the options at all. In browsers without MutationObserver, the
+ * options are read on each call. */
+public final class DropDownSupport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DropDownSupport.class);
+
+    private static final int MAX_SNAPSHOTS = 64;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String STALE = "stale";
+
+    /** Returns the version token of the options of the drop down given as first argument and the indexes of its selected
+     * options. If the token differs from the second argument, or if option changes cannot be observed, the labels, values and
+     * disabled states of the options are returned as well. The token is <code>null</code> if option changes cannot be
+     * observed. Returns <code>null</code> if the element is not a drop down. */
+    private static final String READ_SCRIPT = "var s = arguments[0], known = arguments[1], state = s.__aludratestOptions; "
+            + "if (!s.options) { return null; } "
+            + "if (!state) { state = s.__aludratestOptions = { token: String(Math.random()).substring(2), version: 0, observed: false }; "
+            + "if (window.MutationObserver) { new MutationObserver(function() { state.version++; }).observe(s, { childList: true, "
+            + "subtree: true, characterData: true, attributes: true, attributeFilter: ['value', 'label', 'disabled'] }); "
+            + "state.observed = true; } } "
+            + "var o = s.options, selected = [], i; for (i = 0; i < o.length; i++) { if (o[i].selected) { selected.push(i); } } "
+            + "var token = (state.observed ? state.token + ':' + state.version : null); "
+            + "if (token !== null && token === known) { return [token, selected]; } "
+            + "var labels = [], values = [], disabled = []; for (i = 0; i < o.length; i++) { labels.push(o[i].text); "
+            + "values.push(o[i].value); disabled.push(o[i].disabled || (o[i].parentNode.tagName == 'OPTGROUP' "
+            + "&& o[i].parentNode.disabled) ? true : false); } "
+            + "return [token, selected, labels, values, disabled];";
+
+    /** Selects the option with the index given as third argument in the drop down given as first argument, dispatching input
+     * and change events if the option has not been selected before. Returns <code>stale</code> without selecting anything if
+     * the version token given as second argument is not <code>null</code> and differs from the current one, i.e. if the
+     * index may refer to another option. Returns <code>null</code> on success, otherwise the reason of the failure. */
+    private static final String SELECT_SCRIPT = "var s = arguments[0], token = arguments[1], index = arguments[2], "
+            + "state = s.__aludratestOptions; "
+            + "if (token !== null && (!state || state.token + ':' + state.version !== token)) { return 'stale'; } "
+            + "var o = s.options[index]; if (!o) { return 'Selection Item not found'; } "
+            + "if (o.disabled || (o.parentNode.tagName == 'OPTGROUP' && o.parentNode.disabled)) { "
+            + "return 'Selection Item is disabled'; } "
+            + "if (o.selected) { return null; } if (s.multiple) { o.selected = true; } else { s.selectedIndex = index; } "
+            + "var types = ['input', 'change']; for (var i = 0; i < types.length; i++) { "
+            + "var ev = document.createEvent('HTMLEvents'); ev.initEvent(types[i], true, false); s.dispatchEvent(ev); } "
+            + "return null;";
+
+    private final WebDriver driver;
+
+    private final Map<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    /** Constructor.
+     * @param driver the driver to execute the scripts with. */
+    public DropDownSupport(WebDriver driver) {
+        this.driver = driver;
+    }
+
+    /** Reads the labels of all options of a drop down.
+     * @param element the drop down element.
+     * @return the labels of the options. */
+    public String[] getLabels(WebElement element) {
+        return read(element).labels.clone();
+    }
+
+    /** Reads the values of all options of a drop down.
+     * @param element the drop down element.
+     * @return the values of the options. */
+    public String[] getValues(WebElement element) {
+        return read(element).values.clone();
+    }
+
+    /** Reads the label of the first selected option of a drop down.
+     * @param element the drop down element.
+     * @return the label of the first selected option, or <code>null</code> if no option is selected. */
+    public String getSelectedLabel(WebElement element) {
+        Snapshot snapshot = read(element);
+        return (snapshot.selected.length > 0 ? snapshot.labels[snapshot.selected[0]] : null);
+    }
+
+    /** Selects an option of a drop down, dispatching input and change events if it has not been selected before. In a
+     * multi-select drop down, other selected options remain selected.
+     * @param element the drop down element.
+     * @param optionLocator a label or index locator of the option to select.
+     * @throws AutomationException if the option does not exist or is disabled. */
+    public void select(WebElement element, OptionLocator optionLocator) {
+        LOGGER.debug("select({}, WebElement)", optionLocator);
+        if (!(optionLocator instanceof LabelLocator) && !(optionLocator instanceof IndexLocator)) {
+            throw ServiceUtil.newUnsupportedLocatorException(optionLocator);
+        }
+        WebElement target = LocatorSupport.unwrap(element);
+        String key = getKey(target);
+        Snapshot snapshot = getCachedSnapshot(key);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int index = (snapshot != null ? indexOf(snapshot, optionLocator) : -1);
+            if (index < 0) {
+                if (snapshot == null || snapshot.cached) {
+                    // the snapshot may be outdated, so read the options to decide
+                    snapshot = read(target, key, null);
+                    index = indexOf(snapshot, optionLocator);
+                }
+                if (index < 0) {
+                    throw new AutomationException("Selection Item not found");
+                }
+            }
+            if (!snapshot.cached && snapshot.disabled[index]) {
+                throw new AutomationException("Selection Item is disabled");
+            }
+            Object result = execute(SELECT_SCRIPT, target, snapshot.token, Long.valueOf(index));
+            if (!STALE.equals(result)) {
+                if (result != null) {
+                    throw new AutomationException(result.toString());
+                }
+                return;
+            }
+            removeSnapshot(key);
+            snapshot = null;
+        }
+        throw new AutomationException("The options of the drop down kept changing while selecting " + optionLocator);
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private Snapshot read(WebElement element) {
+        WebElement target = LocatorSupport.unwrap(element);
+        String key = getKey(target);
+        Snapshot cached = getCachedSnapshot(key);
+        return read(target, key, cached);
+    }
+
+    private Snapshot read(WebElement target, String key, Snapshot cached) {
+        List<?> result = (List<?>) execute(READ_SCRIPT, target, cached != null ? cached.token : null);
+        if (result == null) {
+            throw new UnexpectedTagNameException("select", target.getTagName());
+        }
+        String token = (String) result.get(0);
+        int[] selected = toIntArray((List<?>) result.get(1));
+        Snapshot snapshot;
+        if (result.size() == 2 && cached != null) {
+            snapshot = new Snapshot(token, cached.labels, cached.values, cached.disabled, selected, false);
+        }
+        else {
+            snapshot = new Snapshot(token, toStringArray((List<?>) result.get(2)), toStringArray((List<?>) result.get(3)),
+                    toBooleanArray((List<?>) result.get(4)), selected, false);
+        }
+        if (key != null && token != null) {
+            synchronized (snapshots) {
+                snapshots.put(key, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    private Snapshot getCachedSnapshot(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (snapshots) {
+            Snapshot snapshot = snapshots.get(key);
+            return (snapshot != null ? snapshot.asCached() : null);
+        }
+    }
+
+    private void removeSnapshot(String key) {
+        if (key != null) {
+            synchronized (snapshots) {
+                snapshots.remove(key);
+            }
+        }
+    }
+
+    private Object execute(String script, Object... arguments) {
+        return ((JavascriptExecutor) driver).executeScript(script, arguments);
+    }
+
+    private static String getKey(WebElement element) {
+        return (element instanceof RemoteWebElement ? ((RemoteWebElement) element).getId() : null);
+    }
+
+    private static int indexOf(Snapshot snapshot, OptionLocator optionLocator) {
+        if (optionLocator instanceof IndexLocator) {
+            int index = ((IndexLocator) optionLocator).getIndex();
+            return (index >= 0 && index < snapshot.labels.length ? index : -1);
+        }
+        String label = normalize(((LabelLocator) optionLocator).getLabel());
+        for (int i = 0; i < snapshot.labels.length; i++) {
+            if (normalize(snapshot.labels[i]).equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize(String text) {
+        return (text == null ? "" : text.replaceAll("\\s+", " ").trim());
+    }
+
+    private static String[] toStringArray(List<?> list) {
+        String[] result = new String[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (list.get(i) != null ? list.get(i).toString() : null);
+        }
+        return result;
+    }
+
+    private static int[] toIntArray(List<?> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Number) list.get(i)).intValue();
+        }
+        return result;
+    }
+
+    private static boolean[] toBooleanArray(List<?> list) {
+        boolean[] result = new boolean[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Boolean.TRUE.equals(list.get(i));
+        }
+        return result;
+    }
+
+    /** The options of a drop down as read at a certain version. */
+    private static final class Snapshot {
+
+        private final String token;
+
+        private final String[] labels;
+
+        private final String[] values;
+
+        private final boolean[] disabled;
+
+        private final int[] selected;
+
+        /** <code>true</code> if the snapshot has been taken from the cache without asking the browser. */
+        private final boolean cached;
+
+        private Snapshot(String token, String[] labels, String[] values, boolean[] disabled, int[] selected, boolean cached) {
+            this.token = token;
+            this.labels = labels;
+            this.values = values;
+            this.disabled = disabled;
+            this.selected = selected;
+            this.cached = cached;
+        }
+
+        private Snapshot asCached() {
+            return new Snapshot(token, labels, values, disabled, selected, true);
+        }
+
+    }
+
+}
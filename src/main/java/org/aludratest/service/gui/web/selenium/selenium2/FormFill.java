@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.aludratest.service.locator.element.GUIElementLocator;
+
+/** The field values to apply with {@link Selenium2Interaction#fillForm(FormFill, int)}, in the order of application. Fields are
+ * added using the fluent methods, e.g.
+ * <code>new FormFill().type(nameLocator, "Smith").selectLabel(countryLocator, "Germany").check(termsLocator, true)</code>. All
+ * fields are located before the first value is applied, so fields which only become visible or enabled due to the value of
+ * another field have to be filled by a separate call. */
+public final class FormFill {
+
+    /** The kinds of fields. */
+    public enum Kind {
+        /** Text typed into an input field or text area. */
+        TEXT,
+        /** Text typed into an input field or text area using native key events. */
+        NATIVE_TEXT,
+        /** Drop down entry selected by its label. */
+        LABEL,
+        /** Drop down entry selected by its index. */
+        INDEX,
+        /** State of a check box. */
+        CHECK
+    }
+
+    private final List<Field> fields = new ArrayList<Field>();
+
+    /** Adds a text field whose value is set by script, followed by input and change events. Fields which cannot be set by
+     * script, like file inputs, are typed using native key events.
+     * @param locator the locator of the field.
+     * @param text the text to set.
+     * @return this instance. */
+    public FormFill type(GUIElementLocator locator, String text) {
+        return add(locator, Kind.TEXT, text == null ? "" : text);
+    }
+
+    /** Adds a text field which is typed using native key events, like {@link Selenium2Wrapper#type}, for applications which
+     * react to individual key events.
+     * @param locator the locator of the field.
+     * @param text the text to type.
+     * @return this instance. */
+    public FormFill typeNatively(GUIElementLocator locator, String text) {
+        return add(locator, Kind.NATIVE_TEXT, text == null ? "" : text);
+    }
+
+    /** Adds a drop down whose entry is selected by label.
+     * @param locator the locator of the drop down.
+     * @param label the label of the entry to select.
+     * @return this instance. */
+    public FormFill selectLabel(GUIElementLocator locator, String label) {
+        return add(locator, Kind.LABEL, label);
+    }
+
+    /** Adds a drop down whose entry is selected by index.
+     * @param locator the locator of the drop down.
+     * @param index the index of the entry to select.
+     * @return this instance. */
+    public FormFill selectIndex(GUIElementLocator locator, int index) {
+        return add(locator, Kind.INDEX, Integer.valueOf(index));
+    }
+
+    /** Adds a check box which is clicked if its state differs from the requested one.
+     * @param locator the locator of the check box.
+     * @param checked the requested state.
+     * @return this instance. */
+    public FormFill check(GUIElementLocator locator, boolean checked) {
+        return add(locator, Kind.CHECK, Boolean.valueOf(checked));
+    }
+
+    /** @return the fields, in the order of application */
+    public List<Field> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    private FormFill add(GUIElementLocator locator, Kind kind, Object value) {
+        fields.add(new Field(locator, kind, value));
+        return this;
+    }
+
+    /** A field of a {@link FormFill}. */
+    public static final class Field {
+
+        private final GUIElementLocator locator;
+
+        private final Kind kind;
+
+        private final Object value;
+
+        private Field(GUIElementLocator locator, Kind kind, Object value) {
+            this.locator = locator;
+            this.kind = kind;
+            this.value = value;
+        }
+
+        /** @return the {@link #locator} of this field */
+        public GUIElementLocator getLocator() {
+            return locator;
+        }
+
+        /** @return the {@link #kind} of this field */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return the {@link #value} of this field; a String, Integer or Boolean depending on the kind */
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + locator + " = " + value;
+        }
+
+    }
+
+    /** The result of applying a {@link Field}. */
+    public static final class Result {
+
+        private final Field field;
+
+        private final String failure;
+
+        Result(Field field, String failure) {
+            this.field = field;
+            this.failure = failure;
+        }
+
+        /** @return the {@link #field} of this result */
+        public Field getField() {
+            return field;
+        }
+
+        /** @return <code>true</code> if the value has been applied */
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /** @return the reason why the value could not be applied, or <code>null</code> if it has been applied */
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return field + (failure == null ? ": OK" : ": " + failure);
+        }
+
+    }
+
+}
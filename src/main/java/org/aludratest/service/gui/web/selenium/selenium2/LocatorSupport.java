@@ -63,6 +63,7 @@ public class LocatorSupport {
 
     private final WebDriver driver;
     private final SeleniumWrapperConfiguration config;
+    private final DropDownSupport dropDownSupport;
 
     /** Private constructor of utility class preventing instantiation by other classes
      * @param driver
@@ -70,6 +71,7 @@ public class LocatorSupport {
     public LocatorSupport(WebDriver driver, SeleniumWrapperConfiguration config) {
         this.driver = driver;
         this.config = config;
+        this.dropDownSupport = new DropDownSupport(driver);
     }
 
     /** @return the {@link #driver} */
@@ -77,6 +79,11 @@ public class LocatorSupport {
         return driver;
     }
 
+    /** @return the {@link #dropDownSupport} which reads and selects the options of drop down boxes */
+    public DropDownSupport getDropDownSupport() {
+        return dropDownSupport;
+    }
+
     /** Performs an immediate element lookup (meaning no implicit Selenium wait time is imposed). It is expected to return
      * immediately. Unfortunately there exists ChromeDriver issue #402 which sometimes makes the ChromeDriver hang on lookups and
      * timeout after 600 seconds. See <a href="https://code.google.com/p/chromedriver/issues/detail?id=402">code.google.com</a>.
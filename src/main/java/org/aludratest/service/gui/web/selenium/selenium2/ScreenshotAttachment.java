@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.testcase.event.attachment.Attachment;
+import org.apache.commons.codec.binary.Base64;
+
+/** Attachment for a screenshot which has been received from the browser as Base64 string. Decoding the image data is done
+ * on a shared background executor, so the test thread can continue as soon as the raw screenshot has been captured. The
+ * decoded data is only awaited when {@link #getFileData()} is called, typically by the log writer. */
+public class ScreenshotAttachment extends Attachment {
+
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "aludratest-screenshot-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final String base64Data;
+
+    private final String fileExtension;
+
+    private final Future<byte[]> fileData;
+
+    /** Creates a new screenshot attachment and schedules decoding of its data.
+     * @param label the label of the attachment.
+     * @param base64Data the screenshot data, as returned by the browser.
+     * @param fileExtension the file extension to use for the attachment. */
+    public ScreenshotAttachment(String label, final String base64Data, String fileExtension) {
+        super(label);
+        this.base64Data = base64Data;
+        this.fileExtension = fileExtension;
+        this.fileData = DECODER.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return Base64.decodeBase64(base64Data);
+            }
+        });
+    }
+
+    @Override
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    @Override
+    public byte[] getFileData() {
+        try {
+            return fileData.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException("Interrupted while decoding screenshot", e);
+        }
+        catch (ExecutionException e) {
+            throw new TechnicalException("Could not decode screenshot", e.getCause());
+        }
+    }
+
+    @Override
+    public String getFileDataAsBase64String() {
+        // the browser already delivers Base64, so there is no need to wait for decoding and encode again
+        return base64Data;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.aludratest.testcase.event.attachment.Attachment;
+import org.aludratest.testcase.event.attachment.StringAttachment;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/** Creates the screenshot attachments of a session. If deduplication is enabled, the store remembers a hash of the last
+ * screenshot of each window, and a screenshot which is identical to the previous one of the same window is replaced by a
+ * small text attachment referring to the previous screenshot. This avoids storing the same full-window image for every
+ * step of a long scenario. */
+public class ScreenshotStore {
+
+    private final boolean deduplicate;
+
+    private final Map<String, Screenshot> lastScreenshots = new HashMap<String, Screenshot>();
+
+    private int deduplicatedCount;
+
+    /** Creates a new store.
+     * @param deduplicate if <code>true</code>, identical consecutive screenshots of a window are replaced by references. */
+    public ScreenshotStore(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /** Creates the attachment for a screenshot.
+     * @param windowKey a key identifying the window, e.g. its handle.
+     * @param label the label of the attachment.
+     * @param base64Data the screenshot data, as returned by the browser.
+     * @param fileExtension the file extension to use for the attachment.
+     * @return the attachment containing the screenshot, or a text attachment referring to the previous screenshot of the
+     *         window if it is unchanged. */
+    public synchronized Attachment createAttachment(String windowKey, String label, String base64Data, String fileExtension) {
+        if (!deduplicate) {
+            return new ScreenshotAttachment(label, base64Data, fileExtension);
+        }
+        String hash = DigestUtils.sha1Hex(base64Data);
+        Screenshot previous = lastScreenshots.get(windowKey);
+        if (previous != null && previous.hash.equals(hash)) {
+            deduplicatedCount++;
+            return new StringAttachment(label + " (unchanged)", "Screenshot is identical to previous screenshot \""
+                    + previous.label + "\" (SHA-1 " + hash + ")", "txt");
+        }
+        lastScreenshots.put(windowKey, new Screenshot(label, hash));
+        return new ScreenshotAttachment(label, base64Data, fileExtension);
+    }
+
+    /** @return the number of screenshots which have been replaced by references so far. */
+    public synchronized int getDeduplicatedCount() {
+        return deduplicatedCount;
+    }
+
+    private static final class Screenshot {
+
+        private final String label;
+
+        private final String hash;
+
+        private Screenshot(String label, String hash) {
+            this.label = label;
+            this.hash = hash;
+        }
+
+    }
+
+}
@@ -15,18 +15,19 @@
  */
 package org.aludratest.service.gui.web.selenium.selenium2;
 
+import java.util.List;
 import java.util.Map;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.FunctionalFailure;
 import org.aludratest.service.gui.web.WebGUIInteraction;
+import org.aludratest.service.gui.web.selenium.httpproxy.RequestRule;
 import org.aludratest.service.gui.web.selenium.util.DocCache;
 import org.aludratest.service.locator.element.GUIElementLocator;
 import org.aludratest.service.locator.element.XPathLocator;
 import org.aludratest.service.locator.option.OptionLocator;
 import org.aludratest.service.locator.window.TitleLocator;
 import org.aludratest.service.locator.window.WindowLocator;
-import org.aludratest.util.DataUtil;
 import org.databene.commons.StringUtil;
 import org.openqa.selenium.NoSuchWindowException;
 import org.w3c.dom.NodeList;
@@ -248,6 +249,42 @@ public class Selenium2Interaction extends AbstractSelenium2Action implements Web
         return wrapper.captureActiveWindowScreenshotToString();
     }
 
+    /** Captures a screenshot of a single element, which transfers much less data than a screenshot of the whole window.
+     * @param locator the locator of the element.
+     * @param margin the number of pixels around the element to include.
+     * @return the Base64 encoded PNG screenshot. */
+    public String captureElement(GUIElementLocator locator, int margin) {
+        return wrapper.captureElementScreenshotToString(locator, margin);
+    }
+
+    /** Fills several form fields with as few browser round trips as possible, see
+     * {@link Selenium2Wrapper#fillForm(FormFill, int)}. All fields are attempted, even if some of them fail.
+     * @param form the fields to fill.
+     * @param taskCompletionTimeout the task completion timeout to apply after all fields have been filled.
+     * @throws AutomationException if any field could not be filled, after all fields have been attempted; the message lists
+     *             each failed field. */
+    public void fillForm(FormFill form, int taskCompletionTimeout) {
+        List<FormFill.Result> results = wrapper.fillForm(form, taskCompletionTimeout);
+        StringBuilder failures = new StringBuilder();
+        for (FormFill.Result result : results) {
+            if (!result.isSuccess()) {
+                failures.append(failures.length() > 0 ? "; " : "").append(result);
+            }
+        }
+        if (failures.length() > 0) {
+            throw new AutomationException("Could not fill form fields: " + failures);
+        }
+    }
+
+    /** Executes a sequence of interactions and completion conditions, awaiting the precondition of each interaction in the
+     * browser, so the next interaction is performed as soon as its element is ready. See
+     * {@link Selenium2Wrapper#runPipeline(ActionPipeline, int)}.
+     * @param pipeline the steps to execute.
+     * @param taskCompletionTimeout the task completion timeout to apply after the last step. */
+    public void runPipeline(ActionPipeline pipeline, int taskCompletionTimeout) {
+        wrapper.runPipeline(pipeline, taskCompletionTimeout);
+    }
+
     @Override
     public void waitForAjaxOperationEnd(String frameworkName, int maxWaitTime) {
         wrapper.waitForAjaxOperationEnd(frameworkName, maxWaitTime);
@@ -271,6 +308,19 @@ public class Selenium2Interaction extends AbstractSelenium2Action implements Web
         wrapper.addCustomRequestHeader(key, value);
     }
 
+    /** Adds a rule to the local proxy for blocking, stubbing or delaying requests of the application under test, e.g. to cut
+     * page load times caused by analytics or chat widgets. The rule is valid until the end of this session or until
+     * {@link #clearRequestRules()} is called. Has no effect if no local proxy is used.
+     * @param rule the rule to add. */
+    public void addRequestRule(RequestRule rule) {
+        wrapper.addRequestRule(rule);
+    }
+
+    /** Removes all rules which have been added using {@link #addRequestRule(RequestRule)}. */
+    public void clearRequestRules() {
+        wrapper.clearRequestRules();
+    }
+
     @Override
     public void wrongPageFlow(String msg) {
         throw new FunctionalFailure(msg);
@@ -283,20 +333,35 @@ public class Selenium2Interaction extends AbstractSelenium2Action implements Web
 
     @Override
     public NodeList evalXPath(XPathLocator locator) {
-        String html = new String(wrapper.getPageSource().getFileData(), DataUtil.UTF_8);
-        return DocCache.evalXPathInHTML(locator, html);
+        return evalXPath(locator.toString());
     }
 
     @Override
     public NodeList evalXPath(String xpath) {
-        String html = new String(wrapper.getPageSource().getFileData(), DataUtil.UTF_8);
-        return DocCache.evalXPathInHTML(xpath, html);
+        if (isBrowserXPathMode()) {
+            NodeList result = wrapper.evalXPathInBrowser(xpath);
+            if (result != null) {
+                return result;
+            }
+        }
+        String html = wrapper.getPageSourceText();
+        return DocCache.evalXPathInHTML(xpath, html, wrapper.getDocCachePartition());
     }
 
     @Override
     public String evalXPathAsString(String xpath) {
-        String html = new String(wrapper.getPageSource().getFileData(), DataUtil.UTF_8);
-        return DocCache.evalXPathInHTMLAsString(xpath, html);
+        if (isBrowserXPathMode()) {
+            String result = wrapper.evalXPathAsStringInBrowser(xpath);
+            if (result != null) {
+                return result;
+            }
+        }
+        String html = wrapper.getPageSourceText();
+        return DocCache.evalXPathInHTMLAsString(xpath, html, wrapper.getDocCachePartition());
+    }
+
+    private boolean isBrowserXPathMode() {
+        return "browser".equals(getConfiguration().getXPathEvaluationMode());
     }
 
     @Override
@@ -15,23 +15,33 @@
  */
 package org.aludratest.service.gui.web.selenium.selenium2;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.FunctionalFailure;
@@ -40,9 +50,12 @@ import org.aludratest.exception.TechnicalException;
 import org.aludratest.service.SystemConnector;
 import org.aludratest.service.gui.web.selenium.SeleniumResourceService;
 import org.aludratest.service.gui.web.selenium.SeleniumWrapperConfiguration;
+import org.aludratest.service.gui.web.selenium.SystemActivityNotifier;
 import org.aludratest.service.gui.web.selenium.SystemDownloadProvider;
 import org.aludratest.service.gui.web.selenium.httpproxy.AuthenticatingHttpProxy;
-import org.aludratest.service.gui.web.selenium.selenium2.condition.AbstractAjaxIdleCondition;
+import org.aludratest.service.gui.web.selenium.httpproxy.HttpResponseCache;
+import org.aludratest.service.gui.web.selenium.httpproxy.RequestRule;
+import org.aludratest.service.gui.web.selenium.httpproxy.TrafficCapture;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.AnyDropDownOptions;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.DojoPre17AjaxIdleCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.DropDownBoxOptionLabelsPresence;
@@ -57,22 +70,29 @@ import org.aludratest.service.gui.web.selenium.selenium2.condition.ElementValueP
 import org.aludratest.service.gui.web.selenium.selenium2.condition.IceFacesAjaxIdleCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.JQueryAjaxIdleCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.MixedElementCondition;
+import org.aludratest.service.gui.web.selenium.selenium2.condition.NetworkIdleCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.NotCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.OptionSelected;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.PrimeFacesAjaxIdleCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.ValidatingCondition;
 import org.aludratest.service.gui.web.selenium.selenium2.condition.WindowPresence;
+import org.aludratest.service.gui.web.selenium.util.BrowserXPath;
+import org.aludratest.service.gui.web.selenium.util.DocCache;
+import org.aludratest.service.locator.element.CSSLocator;
 import org.aludratest.service.locator.element.GUIElementLocator;
 import org.aludratest.service.locator.element.IdLocator;
-import org.aludratest.service.locator.option.IndexLocator;
+import org.aludratest.service.locator.element.LabelLocator;
+import org.aludratest.service.locator.element.XPathLocator;
 import org.aludratest.service.locator.option.OptionLocator;
 import org.aludratest.service.locator.window.TitleLocator;
 import org.aludratest.service.locator.window.WindowLocator;
 import org.aludratest.service.util.ServiceUtil;
+import org.aludratest.service.util.SystemBusyIndicator;
 import org.aludratest.service.util.TaskCompletionUtil;
 import org.aludratest.testcase.event.attachment.Attachment;
 import org.aludratest.testcase.event.attachment.BinaryAttachment;
 import org.aludratest.testcase.event.attachment.StringAttachment;
+import org.aludratest.util.DataUtil;
 import org.aludratest.util.data.helper.DataMarkerCheck;
 import org.aludratest.util.retry.RetryService;
 import org.apache.commons.codec.binary.Base64;
@@ -82,11 +102,13 @@ import org.databene.commons.Validator;
 import org.openqa.selenium.Alert;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Cookie;
+import org.openqa.selenium.HasCapabilities;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.NoSuchWindowException;
 import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Platform;
 import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.TimeoutException;
@@ -97,13 +119,17 @@ import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.phantomjs.PhantomJSDriver;
 import org.openqa.selenium.remote.Augmenter;
+import org.openqa.selenium.remote.Command;
 import org.openqa.selenium.remote.CommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.remote.Response;
 import org.openqa.selenium.remote.ScreenshotException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
 import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.Select;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.NodeList;
 
 import com.thoughtworks.selenium.Selenium;
 
@@ -120,12 +146,91 @@ public class Selenium2Wrapper {
 
     private static final String WINDOW_FOCUS_SCRIPT = "window.focus()";
 
+    /** Applies the <code>[element, kind, value]</code> entries given as first argument, see {@link FormFill.Kind}, and returns
+     * an array with <code>null</code> for each applied entry, <code>'#native'</code> for each text field which has to be typed
+     * using native key events, and an error message for each entry which could not be applied. */
+    private static final String FORM_FILL_SCRIPT = "var fields = arguments[0], out = []; "
+            + "function fire(e, type) { var ev = document.createEvent('HTMLEvents'); ev.initEvent(type, true, false); "
+            + "e.dispatchEvent(ev); } "
+            + "function norm(s) { return (s || '').replace(/\\s+/g, ' ').replace(/^ | $/g, ''); } "
+            + "for (var i = 0; i < fields.length; i++) { var e = fields[i][0], kind = fields[i][1], v = fields[i][2]; try { "
+            + "if (kind == 'CHECK') { if (e.checked != v) { e.click(); } out.push(null); continue; } "
+            + "if (kind == 'TEXT') { if (e.type == 'file') { out.push('#native'); continue; } "
+            + "if (e.readOnly) { throw 'Input field is read-only'; } e.focus(); "
+            + "var d = Object.getOwnPropertyDescriptor ? Object.getOwnPropertyDescriptor(Object.getPrototypeOf(e), 'value') : null; "
+            + "if (d && d.set) { d.set.call(e, v); } else { e.value = v; } fire(e, 'input'); } "
+            + "else { var index = -1; if (!e.options) { throw 'Element is not a drop down'; } "
+            + "if (kind == 'INDEX') { index = (v >= 0 && v < e.options.length ? v : -1); } "
+            + "else { for (var j = 0; j < e.options.length; j++) { if (norm(e.options[j].text) == norm(v)) { index = j; break; } } } "
+            + "if (index < 0) { throw 'Selection Item not found'; } var o = e.options[index]; "
+            + "if (o.disabled || (o.parentNode.tagName == 'OPTGROUP' && o.parentNode.disabled)) { "
+            + "throw 'Selection Item is disabled'; } "
+            + "if (e.selectedIndex == index) { out.push(null); continue; } e.selectedIndex = index; } "
+            + "fire(e, 'change'); if (kind == 'TEXT') { e.blur(); } out.push(null); } "
+            + "catch (x) { out.push(String(x && x.message ? x.message : x)); } } return out;";
+
+    private static final String CLEAR_SCRIPT = "var e = arguments[0]; "
+            + "var d = Object.getOwnPropertyDescriptor ? Object.getOwnPropertyDescriptor(Object.getPrototypeOf(e), 'value') : null; "
+            + "if (d && d.set) { d.set.call(e, ''); } else { e.value = ''; } "
+            + "var types = ['input', 'change']; for (var i = 0; i < types.length; i++) { "
+            + "var ev = document.createEvent('HTMLEvents'); ev.initEvent(types[i], true, false); e.dispatchEvent(ev); }";
+
+    /** Asynchronously waits until the element located by the <code>xpath</code>, <code>css</code> or <code>link</code>
+     * expression given as first and second argument is present and, depending on the next three arguments, visible, enabled
+     * and in foreground, and returns it. For the kind <code>script</code>, waits until the script body given as second
+     * argument returns a truthy value, and returns <code>true</code>. The condition is checked on each DOM mutation, and
+     * every 50 ms for changes not reported as mutations. Returns <code>null</code> after the timeout given as sixth
+     * argument. If the script body cannot be compiled, e.g. due to a content security policy forbidding eval, returns
+     * <code>{error: message}</code> immediately; if the last check before the timeout threw an error, returns
+     * <code>{error: message}</code> instead of <code>null</code>. */
+    private static final String AWAIT_SCRIPT = "var kind = arguments[0], expr = arguments[1], visible = arguments[2], "
+            + "enabled = arguments[3], foreground = arguments[4], timeout = arguments[5], "
+            + "done = arguments[arguments.length - 1], finished = false, observer = null, timer = null, limit = null, "
+            + "fn = null, lastError = null; "
+            + "if (kind == 'script') { try { fn = new Function(expr); } catch (x) { done({ error: String(x) }); return; } } "
+            + "function find() { if (kind == 'script') { return fn() ? true : null; } var e = null; "
+            + "if (kind == 'xpath') { e = document.evaluate(expr, document, null, 9, null).singleNodeValue; } "
+            + "else if (kind == 'css') { e = document.querySelector(expr); } "
+            + "else { var links = document.getElementsByTagName('a'); for (var i = 0; i < links.length; i++) { "
+            + "if ((links[i].textContent || '').replace(/^\\s+|\\s+$/g, '') == expr) { e = links[i]; break; } } } "
+            + "if (!e) { return null; } "
+            + "if (visible && (!(e.offsetWidth || e.offsetHeight || e.getClientRects().length) "
+            + "|| window.getComputedStyle(e).visibility == 'hidden')) { return null; } "
+            + "if (enabled && e.disabled) { return null; } "
+            + "if (foreground) { var r = e.getBoundingClientRect(); "
+            + "var t = document.elementFromPoint(r.left + r.width / 2, r.top + r.height / 2); "
+            + "if (t && t !== e && !e.contains(t)) { return null; } } return e; } "
+            + "function finish(result) { finished = true; if (observer) { observer.disconnect(); } clearInterval(timer); "
+            + "clearTimeout(limit); done(result); } "
+            + "function check() { if (finished) { return; } var result = null; "
+            + "try { result = find(); lastError = null; } catch (x) { lastError = String(x); } "
+            + "if (result) { finish(result); } } "
+            + "limit = setTimeout(function() { if (!finished) { finish(lastError ? { error: lastError } : null); } }, "
+            + "timeout); "
+            + "if (window.MutationObserver) { observer = new MutationObserver(check); "
+            + "observer.observe(document, { childList: true, subtree: true, attributes: true, characterData: true }); } "
+            + "timer = setInterval(check, 50); check();";
+
+    /** The time to wait before evaluating a pipeline step again which failed in an unloading document, in milliseconds. */
+    private static final long PIPELINE_RETRY_DELAY = 100;
+
     private static final String HAS_FOCUS_SCRIPT = "return arguments[0] == window.document.activeElement";
 
+    private static final String ELEMENT_BOX_SCRIPT = "var r = arguments[0].getBoundingClientRect(); "
+            + "return [r.left, r.top, r.width, r.height, window.pageXOffset, window.pageYOffset, window.innerHeight, "
+            + "window.devicePixelRatio || 1];";
+
+    private static final Pattern SCRIPT_STYLE_CONTENT_PATTERN = Pattern.compile(
+            "(<(script|style)\\b[^>]*>).*?(</\\2\\s*>)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
     // static attributes -------------------------------------------------------
 
     private static ProxyPool proxyPool = null;
 
+    private static HttpResponseCache responseCache = null;
+
+    private static final AtomicInteger sessionCounter = new AtomicInteger();
+
     // attributes --------------------------------------------------------------
 
     private final SeleniumWrapperConfiguration configuration;
@@ -136,6 +241,10 @@ public class Selenium2Wrapper {
 
     SystemConnector systemConnector;
 
+    private SystemActivityMonitor activityMonitor;
+
+    private long activityMark;
+
     private WebDriver driver;
 
     private LocatorSupport locatorSupport;
@@ -144,14 +253,48 @@ public class Selenium2Wrapper {
 
     private WebElement highlightedElement;
 
+    private WebDriver screenshotDriver;
+
+    private ScreenshotStore screenshotStore;
+
+    private WindowRegistry windowRegistry;
+
+    private DevToolsTargets devToolsTargets;
+
+    /** The strategy for clearing input fields, or <code>null</code> if it has not been detected yet */
+    private ClearStrategy clearStrategy;
+
+    private Boolean elementScreenshotSupported;
+
+    private GUIElementLocator lastLocator;
+
+    /** The handle of the window the driver is switched to, or <code>null</code> if unknown */
+    private String currentWindowHandle;
+
+    /** The path of the frame the driver is switched to, an empty string for the top-level document, or <code>null</code> if
+     * unknown */
+    private String currentFramePath = "";
+
+    private final String docCachePartition = "session-" + sessionCounter.incrementAndGet();
+
     public Selenium2Wrapper(SeleniumWrapperConfiguration configuration, SeleniumResourceService resourceService,
             SeleniumWebDriverFactory webDriverFactory) {
         try {
             this.configuration = configuration;
             this.resourceService = resourceService;
+            this.screenshotStore = new ScreenshotStore(configuration.isScreenshotDeduplication());
+            this.windowRegistry = new WindowRegistry(configuration.getWindowRegistryMaxAge());
+            this.clearStrategy = ClearStrategy.forName(configuration.getTypeClearStrategy());
+            DocCache.configure(configuration.getXPathDocumentCacheMaxSize() * 1024L * 1024L,
+                    configuration.isXPathDocumentCacheSoftValues(), configuration.getXPathStreamingThreshold() * 1024);
             // TODO support HTTPS
             if ("http".equals(configuration.getUrlOfAutAsUrl().getProtocol()) && configuration.isUsingLocalProxy()) {
                 this.proxy = getProxyPool().acquire();
+                this.proxy.setResponseCache(configuration.isProxyCacheEnabled() ? getResponseCache(configuration) : null);
+                int trafficCaptureSize = configuration.getProxyTrafficCaptureSize();
+                this.proxy.setTrafficCapture(trafficCaptureSize > 0 ? new TrafficCapture(trafficCaptureSize) : null);
+                this.proxy.setMaxWorkerThreads(configuration.getProxyMaxThreads());
+                this.proxy.setShutdownTimeout(configuration.getProxyShutdownTimeout());
                 this.proxy.start();
             }
 
@@ -163,6 +306,17 @@ public class Selenium2Wrapper {
                 this.driver = webDriverFactory.createLocalWebDriver(configuration);
             }
             this.driver.manage().timeouts().pageLoadTimeout(configuration.getTimeout(), TimeUnit.MILLISECONDS);
+            // asynchronous scripts finish by themselves after the timeout; the margin covers the script round trip
+            this.driver.manage().timeouts().setScriptTimeout(configuration.getTimeout() + 5000, TimeUnit.MILLISECONDS);
+            int devToolsPort = configuration.getDevToolsPort();
+            String devToolsHost = configuration.getDevToolsHost();
+            if (devToolsHost.length() == 0 && !configuration.isUsingRemoteDriver()) {
+                devToolsHost = "127.0.0.1";
+            }
+            // the Selenium URL of remote drivers usually points to a grid hub, so the node must be configured explicitly
+            if (devToolsPort > 0 && devToolsHost.length() > 0) {
+                this.devToolsTargets = new DevToolsTargets(devToolsHost, devToolsPort);
+            }
             this.locatorSupport = new LocatorSupport(this.driver, configuration);
         } catch (Exception e) {
             LOGGER.error("Error initializing Selenium 2", e);
@@ -181,6 +335,17 @@ public class Selenium2Wrapper {
         return proxyPool;
     }
 
+    private static synchronized HttpResponseCache getResponseCache(SeleniumWrapperConfiguration configuration) {
+        if (responseCache == null) {
+            String diskDir = configuration.getProxyCacheDiskDirectory();
+            responseCache = new HttpResponseCache(configuration.getProxyCacheMaxSize() * 1024L * 1024L,
+                    configuration.getProxyCacheForcedPatterns(), configuration.getProxyCacheForcedMaxAge(),
+                    StringUtil.isEmpty(diskDir) ? null : new File(diskDir),
+                    configuration.getProxyCacheDiskMaxSize() * 1024L * 1024L);
+        }
+        return responseCache;
+    }
+
     /**
      * Closes the application under test respectively the main browser window
      * and all child windows.
@@ -192,15 +357,41 @@ public class Selenium2Wrapper {
     }
 
     private void forceCloseApplicationUnderTest() {
+        DocCache.invalidatePartition(docCachePartition);
+        if (this.activityMonitor != null) {
+            this.activityMonitor.dispose();
+            this.activityMonitor = null;
+        }
+        if (this.devToolsTargets != null) {
+            this.devToolsTargets.close();
+            this.devToolsTargets = null;
+        }
         if (this.proxy != null) {
             this.proxy.stop();
+            this.proxy.clearRequestRules();
+            this.proxy.setTrafficCapture(null);
             getProxyPool().release(this.proxy);
             this.proxy = null;
         }
+        if (this.driver != null && configuration.isFastTeardown()) {
+            // quit() closes all windows anyway, so the windows are not closed one by one, and the test thread does not wait
+            LOGGER.debug("Quitting web driver in the background");
+            final URL hostToRelease = this.seleniumUrl;
+            this.seleniumUrl = null;
+            DriverReaper.quit(driver, configuration.getQuitTimeout(), hostToRelease == null ? null : new Runnable() {
+                @Override
+                public void run() {
+                    resourceService.release(hostToRelease);
+                }
+            });
+            return;
+        }
         if (this.driver != null) {
             for (String id : getAllWindowIDs()) {
                 try {
-                    selectWindowByTechnicalName(id);
+                    // no highlight removal necessary, as the windows are closed
+                    LOGGER.debug("driver.switchTo().window()", id);
+                    switchToWindow(id);
                     close();
                 }
                 catch (Exception e) {
@@ -258,6 +449,10 @@ public class Selenium2Wrapper {
         if (actionPending) {
             waitUntilNotBusy();
         }
+        else {
+            markActivity();
+        }
+        this.lastLocator = locator;
         MixedElementCondition condition = new MixedElementCondition(locator, locatorSupport, visible, enabled,
                 configuration.isZIndexCheckEnabled());
         try {
@@ -275,9 +470,18 @@ public class Selenium2Wrapper {
             int timeout = (taskCompletionTimeout == 0 ? configuration.getTaskCompletionTimeout() : taskCompletionTimeout);
             String failureMessage = "After operation " + operation + "() the system remained busy exceeding the timeout of "
                     + timeout + " ms";
-            TaskCompletionUtil.waitForActivityAndCompletion(systemConnector, failureMessage, configuration.getTaskStartTimeout(),
-                    timeout, configuration.getTaskPollingInterval());
+            SystemActivityMonitor monitor = getActivityMonitor();
+            if (monitor != null) {
+                monitor.waitForActivityAndCompletion(activityMark, failureMessage, configuration.getTaskStartTimeout(), timeout,
+                        configuration.getTaskPollingInterval());
+            }
+            else {
+                TaskCompletionUtil.waitForActivityAndCompletion(systemConnector, failureMessage,
+                        configuration.getTaskStartTimeout(), timeout, configuration.getTaskPollingInterval());
+            }
         }
+        // operation succeeded, so the element is no longer of interest for failure screenshots
+        this.lastLocator = null;
     }
 
     private void waitUntilNotBusy() {
@@ -294,11 +498,42 @@ public class Selenium2Wrapper {
             }
         }
 
-        if (this.systemConnector != null) {
+        SystemActivityMonitor monitor = getActivityMonitor();
+        if (monitor != null) {
+            monitor.waitUntilNotBusy(taskCompletionTimeout, configuration.getTaskPollingInterval(),
+                    "System not available within the timeout of " + originalTimeout + " ms");
+        }
+        else if (this.systemConnector != null) {
             TaskCompletionUtil.waitUntilNotBusy(this.systemConnector, taskCompletionTimeout,
                     configuration.getTaskPollingInterval(),
                     "System not available within the timeout of " + originalTimeout + " ms");
         }
+        markActivity();
+    }
+
+    /** Remembers the activity count of the system connector before an interaction, so activity which is started and
+     * finished before the wait after the interaction begins is observed as well. */
+    private void markActivity() {
+        SystemActivityMonitor monitor = getActivityMonitor();
+        if (monitor != null) {
+            activityMark = monitor.getActivityCount();
+        }
+    }
+
+    /** Returns the monitor for the activity notifications of the current system connector, registering it if the system
+     * connector has changed.
+     * @return the monitor, or <code>null</code> if the system connector does not push activity notifications. */
+    private SystemActivityMonitor getActivityMonitor() {
+        SystemActivityNotifier notifier = (systemConnector == null ? null : systemConnector
+                .getConnector(SystemActivityNotifier.class));
+        if (activityMonitor != null && activityMonitor.getNotifier() != notifier) {
+            activityMonitor.dispose();
+            activityMonitor = null;
+        }
+        if (activityMonitor == null && notifier != null) {
+            activityMonitor = new SystemActivityMonitor(notifier, systemConnector.getConnector(SystemBusyIndicator.class));
+        }
+        return activityMonitor;
     }
 
     public void click(GUIElementLocator locator, String operation, int taskCompletionTimeout) {
@@ -345,17 +580,257 @@ public class Selenium2Wrapper {
 
     public void type(GUIElementLocator locator, final String value, int taskCompletionTimeout) {
         WebElement element = doBeforeDelegate(locator, true, true, true);
+        type(element, value);
+        doAfterDelegate(taskCompletionTimeout, "type");
+    }
 
-        if (configuration.isTypeSafemode()) {
-            // activate element with a click
-            element.click();
-            element = driver.switchTo().activeElement();
-            element.clear();
+    /** Fills several form fields. All fields are located first, checking the usual preconditions. Then consecutive fields which
+     * do not require native key events are applied with a single script call, which sets the values and dispatches the
+     * corresponding input and change events. Like {@link #select(GUIElementLocator, OptionLocator, int)}, disabled drop down
+     * entries are rejected. Fields which could not be located or applied do not stop the other fields from being filled.
+     * @param form the fields to fill.
+     * @param taskCompletionTimeout the task completion timeout to apply after all fields have been filled.
+     * @return the results of the fields, in the order of the fields. */
+    public List<FormFill.Result> fillForm(FormFill form, int taskCompletionTimeout) {
+        LOGGER.debug("fillForm({})", form.getFields());
+        waitUntilNotBusy();
+        List<FormFill.Field> fields = form.getFields();
+        FormFill.Result[] results = new FormFill.Result[fields.size()];
+        WebElement[] elements = new WebElement[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            FormFill.Field field = fields.get(i);
+            try {
+                elements[i] = doBeforeDelegate(field.getLocator(), true, false, field.getKind() != FormFill.Kind.CHECK);
+            }
+            catch (AutomationException e) {
+                results[i] = new FormFill.Result(field, e.getMessage());
+            }
+            catch (WebDriverException e) {
+                results[i] = new FormFill.Result(field, e.getMessage());
+            }
         }
 
-        // setValue instead of sendKeys to ensure field is reset, and to work with file component
-        setValue(element, value);
-        doAfterDelegate(taskCompletionTimeout, "type");
+        List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < fields.size(); i++) {
+            if (elements[i] == null) {
+                continue;
+            }
+            if (fields.get(i).getKind() == FormFill.Kind.NATIVE_TEXT) {
+                applyFormFillBatch(fields, elements, batch, results);
+                batch.clear();
+                typeFormField(fields.get(i), elements[i], results, i);
+            }
+            else {
+                batch.add(Integer.valueOf(i));
+            }
+        }
+        applyFormFillBatch(fields, elements, batch, results);
+        doAfterDelegate(taskCompletionTimeout, "fillForm");
+        return Arrays.asList(results);
+    }
+
+    private void applyFormFillBatch(List<FormFill.Field> fields, WebElement[] elements, List<Integer> batch,
+            FormFill.Result[] results) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<List<Object>> entries = new ArrayList<List<Object>>();
+        for (Integer index : batch) {
+            FormFill.Field field = fields.get(index.intValue());
+            entries.add(Arrays.<Object> asList(LocatorSupport.unwrap(elements[index.intValue()]), field.getKind().name(),
+                    field.getValue()));
+        }
+        List<?> outcome;
+        try {
+            outcome = (List<?>) executeScript(FORM_FILL_SCRIPT, entries);
+        }
+        catch (WebDriverException e) {
+            for (Integer index : batch) {
+                results[index.intValue()] = new FormFill.Result(fields.get(index.intValue()), e.getMessage());
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            int index = batch.get(i).intValue();
+            Object failure = outcome.get(i);
+            if ("#native".equals(failure)) {
+                typeFormField(fields.get(index), elements[index], results, index);
+            }
+            else {
+                results[index] = new FormFill.Result(fields.get(index), failure == null ? null : failure.toString());
+            }
+        }
+    }
+
+    private void typeFormField(FormFill.Field field, WebElement element, FormFill.Result[] results, int index) {
+        try {
+            type(element, (String) field.getValue());
+            results[index] = new FormFill.Result(field, null);
+        }
+        catch (AutomationException e) {
+            results[index] = new FormFill.Result(field, e.getMessage());
+        }
+        catch (WebDriverException e) {
+            results[index] = new FormFill.Result(field, e.getMessage());
+        }
+    }
+
+    /** Executes the steps of a pipeline. The system is checked for being busy only before the first and after the last step;
+     * between the steps, the browser-side checks of the preconditions and completion conditions take the place of the
+     * system connector polling. Steps whose locator cannot be expressed in the browser are awaited in the JVM as usual.
+     * Elements are not highlighted. If a step starts a navigation, e.g. by a click, the next step may first be evaluated in the
+     * unloading document; it is then evaluated again in the new document until the timeout of the step elapses.
+     * @param pipeline the steps to execute.
+     * @param taskCompletionTimeout the task completion timeout to apply after the last step. */
+    public void runPipeline(ActionPipeline pipeline, int taskCompletionTimeout) {
+        LOGGER.debug("runPipeline({})", pipeline.getSteps());
+        waitUntilNotBusy();
+        int timeout = configuration.getTimeout();
+        for (ActionPipeline.Step step : pipeline.getSteps()) {
+            LOGGER.debug("Pipeline step {}", step);
+            this.lastLocator = step.getLocator();
+            long deadline = System.currentTimeMillis() + timeout;
+            switch (step.getKind()) {
+                case AWAIT_SCRIPT:
+                    if (awaitInBrowser("script", step.getArgument(), false, false, deadline) == null) {
+                        throw new PerformanceFailure("Condition of pipeline step " + step
+                                + " was not fulfilled within the timeout of " + timeout + " ms");
+                    }
+                    break;
+                case AWAIT_ELEMENT:
+                    if (awaitElement(step.getLocator(), false, deadline) == null) {
+                        throw new PerformanceFailure("Element of pipeline step " + step + " did not appear within the timeout of "
+                                + timeout + " ms");
+                    }
+                    break;
+                default:
+                    awaitAndPerformPipelineAction(step, deadline);
+            }
+        }
+        doAfterDelegate(taskCompletionTimeout, "runPipeline");
+    }
+
+    private void awaitAndPerformPipelineAction(ActionPipeline.Step step, long deadline) {
+        boolean enabled = (step.getKind() == ActionPipeline.Kind.TYPE);
+        while (true) {
+            WebElement element = awaitElement(step.getLocator(), enabled, deadline);
+            if (element == null) {
+                throw new AutomationException("Element of pipeline step " + step + " not found, not visible"
+                        + (enabled ? ", not enabled" : "") + " or not in foreground");
+            }
+            try {
+                performPipelineAction(step, element);
+                return;
+            }
+            catch (StaleElementReferenceException e) {
+                // element has been found in the document unloaded by a previous step; await it in the new document
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+                LOGGER.debug("Element of pipeline step {} is stale, awaiting it again", step);
+            }
+        }
+    }
+
+    private WebElement awaitElement(GUIElementLocator locator, boolean enabled, long deadline) {
+        String kind;
+        String expression;
+        if (locator instanceof XPathLocator) {
+            kind = "xpath";
+            expression = locator.toString();
+        }
+        else if (locator instanceof CSSLocator) {
+            kind = "css";
+            expression = locator.toString();
+        }
+        else if (locator instanceof IdLocator) {
+            kind = "css";
+            expression = "[id$='" + locator.toString() + "']";
+        }
+        else if (locator instanceof LabelLocator) {
+            kind = "link";
+            expression = locator.toString();
+        }
+        else {
+            // e.g. alternative locators; use the usual checks in the JVM
+            try {
+                return doBeforeDelegate(locator, true, false, enabled);
+            }
+            catch (AutomationException e) {
+                return null;
+            }
+        }
+        Object result = awaitInBrowser(kind, expression, true, enabled, deadline);
+        return (result instanceof WebElement ? (WebElement) result : null);
+    }
+
+    private Object awaitInBrowser(String kind, String expression, boolean elementChecks, boolean enabled, long deadline) {
+        Object result = null;
+        boolean evaluated = false;
+        while (!evaluated) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                result = ((JavascriptExecutor) driver).executeAsyncScript(AWAIT_SCRIPT, kind, expression,
+                        Boolean.valueOf(elementChecks), Boolean.valueOf(enabled),
+                        Boolean.valueOf(elementChecks && configuration.isZIndexCheckEnabled()),
+                        Integer.valueOf((int) remaining));
+                evaluated = true;
+            }
+            catch (TimeoutException e) {
+                return null;
+            }
+            catch (NoSuchWindowException e) {
+                throw e;
+            }
+            catch (UnhandledAlertException e) {
+                throw e;
+            }
+            catch (UnreachableBrowserException e) {
+                throw e;
+            }
+            catch (WebDriverException e) {
+                // e.g. "document unloaded while waiting for result" if a previous step has started a navigation
+                if (System.currentTimeMillis() + PIPELINE_RETRY_DELAY >= deadline) {
+                    throw e;
+                }
+                LOGGER.debug("Could not await {} {} in the browser, retrying: {}", new Object[] { kind, expression,
+                        e.getMessage() });
+                try {
+                    Thread.sleep(PIPELINE_RETRY_DELAY);
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+        if (result instanceof Map && ((Map<?, ?>) result).containsKey("error")) {
+            throw new AutomationException("Could not evaluate " + kind + " " + expression + " in the browser: "
+                    + ((Map<?, ?>) result).get("error"));
+        }
+        return result;
+    }
+
+    private void performPipelineAction(ActionPipeline.Step step, WebElement element) {
+        switch (step.getKind()) {
+            case CLICK:
+                click(element);
+                break;
+            case DOUBLE_CLICK:
+                doubleClick(element);
+                break;
+            case HOVER:
+                hover(element);
+                break;
+            case TYPE:
+                type(element, step.getArgument());
+                break;
+            default:
+                throw new IllegalArgumentException("Not an interaction: " + step);
+        }
     }
 
     public void sendKeys(GUIElementLocator locator, String keys, int taskCompletionTimeout) {
@@ -388,12 +863,7 @@ public class Selenium2Wrapper {
     public String[] getSelectOptions(GUIElementLocator locator) {
         WebElement element = doBeforeDelegate(locator, true, false, false);
         LOGGER.debug("getSelectOptions({})", locator);
-        Select select = new Select(element);
-        List<WebElement> options = select.getOptions();
-        String[] labels = new String[options.size()];
-        for (int i = 0; i < options.size(); i++) {
-            labels[i] = options.get(i).getText();
-        }
+        String[] labels = locatorSupport.getDropDownSupport().getLabels(element);
         doAfterDelegate(-1, "getSelectOptions");
         return labels;
     }
@@ -456,12 +926,34 @@ public class Selenium2Wrapper {
 
             removeHighlight();
 
+            // performance tweak: if the window registry knows a window with the requested title, only switch to this one
+            String knownHandle = windowRegistry.findHandleByTitle(requestedTitle);
+            if (knownHandle != null) {
+                try {
+                    LOGGER.debug("driver.switchTo().window()", locator);
+                    switchToWindow(knownHandle);
+                    String title = driver.getTitle();
+                    windowRegistry.putTitle(knownHandle, title);
+                    if (requestedTitle.equals(title)) {
+                        return;
+                    }
+                }
+                catch (WebDriverException e) {
+                    // window has been closed in the meantime; fall back to iterating all windows below
+                    windowRegistry.remove(knownHandle);
+                }
+            }
+
             // iterate all windows and return the one with the desired title
             StringBuilder sb = new StringBuilder();
-            for (String handle : getWindowHandles()) {
+            Set<String> handles = getWindowHandles();
+            windowRegistry.retainAll(handles);
+            for (String handle : handles) {
                 try {
                     LOGGER.debug("driver.switchTo().window()", locator);
-                    String title = driver.switchTo().window(handle).getTitle();
+                    switchToWindow(handle);
+                    String title = driver.getTitle();
+                    windowRegistry.putTitle(handle, title);
                     if (sb.length() > 0) {
                         sb.append(", ");
                     }
@@ -485,14 +977,41 @@ public class Selenium2Wrapper {
 
     public void selectWindowByTechnicalName(String windowId) {
         LOGGER.debug("selectWindowByTechnicalName({})", windowId);
+        if (windowId.equals(currentWindowHandle) && "".equals(currentFramePath) && isCurrentWindow(windowId)) {
+            LOGGER.debug("Window {} is already selected", windowId);
+            return;
+        }
         removeHighlight();
         LOGGER.debug("driver.switchTo().window()", windowId);
-        driver.switchTo().window(windowId);
+        switchToWindow(windowId);
+    }
+
+    /** Checks with a single command that the driver is still switched to a window. This is not the case if the application
+     * has closed the window in the meantime; switching to it then fails with a {@link NoSuchWindowException}.
+     * @param handle the handle of the window
+     * @return <code>true</code> if the window exists and is the current window of the driver */
+    private boolean isCurrentWindow(String handle) {
+        try {
+            return handle.equals(driver.getWindowHandle());
+        }
+        catch (WebDriverException e) {
+            LOGGER.debug("Could not determine current window", e);
+            return false;
+        }
     }
 
+    private void switchToWindow(String handle) {
+        driver.switchTo().window(handle);
+        // switching windows always selects the top-level document of the window
+        currentWindowHandle = handle;
+        currentFramePath = "";
+    }
+
+    /** Returns the handles and titles of all open windows. Titles of windows other than the current one are taken from the
+     * {@link WindowRegistry} if they are up to date, so only new windows and windows with outdated titles are switched to.
+     * @return a map from the window handles to the window titles */
     public Map<String, String> getAllWindowHandlesAndTitles() {
         LOGGER.debug("getAllWindowHandlesAndTitles()");
-        Map<String, String> handlesAndTitles = new HashMap<String, String>();
         // store handle and title of current window
         String initialWindowHandle;
         try {
@@ -504,42 +1023,54 @@ public class Selenium2Wrapper {
             LOGGER.debug("driver.getWindowHandles()");
             Set<String> handles = driver.getWindowHandles();
             if (handles.isEmpty()) {
+                windowRegistry.clear();
                 return Collections.emptyMap();
             }
 
             initialWindowHandle = handles.iterator().next();
             LOGGER.debug("driver.switchTo().window(initialWindowHandle)");
-            driver.switchTo().window(initialWindowHandle);
+            switchToWindow(initialWindowHandle);
         }
 
+        // the title of the current window is always queried, as it can be read without switching windows
         try {
-            String title = getTitle();
-            handlesAndTitles.put(initialWindowHandle, title);
+            windowRegistry.putTitle(initialWindowHandle, getTitle());
         }
         catch (WebDriverException e) {
             // ignore current window
             LOGGER.warn("Could not determine title of current window. Assuming window has just been closed.");
+            windowRegistry.remove(initialWindowHandle);
         }
 
-        // iterate all other windows by handle and get their titles
+        // iterate all other windows without up-to-date title by handle and get their titles
         String currentHandle = initialWindowHandle;
         Set<String> handles = getWindowHandles();
-        for (String handle : handles) {
-            if (!handle.equals(initialWindowHandle)) {
+        windowRegistry.retainAll(handles);
+        List<String> outdated = windowRegistry.getHandlesWithoutTitle(handles);
+        // performance tweak: if the browser provides a DevTools target list, read all titles from it with one request
+        Map<String, String> devToolsTitles = (devToolsTargets != null && outdated.size() > 1 ? devToolsTargets
+                .getTitles(outdated) : Collections.<String, String> emptyMap());
+        for (String handle : outdated) {
+            if (devToolsTitles.containsKey(handle)) {
+                windowRegistry.putTitle(handle, devToolsTitles.get(handle));
+            }
+            else if (!handle.equals(initialWindowHandle)) {
                 LOGGER.debug("Switching to window with handle {}", handle);
                 try {
                     LOGGER.debug("driver.switchTo().window(handle)");
-                    driver.switchTo().window(handle);
+                    switchToWindow(handle);
                     currentHandle = handle;
-                    String title;
-                    handlesAndTitles.put(handle, title = driver.getTitle());
+                    String title = driver.getTitle();
+                    windowRegistry.putTitle(handle, title);
                     LOGGER.debug("Window with handle {} has title '{}'", handle, title);
                 }
                 catch (NoSuchWindowException e) {
                     // ignore this window
+                    windowRegistry.remove(handle);
                 }
                 catch (WebDriverException e) {
                     // ignore this window
+                    windowRegistry.remove(handle);
                     LOGGER.warn("WebDriverException when querying window with handle " + handle
                             + ". Assuming window has just been closed.");
                 }
@@ -549,14 +1080,30 @@ public class Selenium2Wrapper {
         if (!currentHandle.equals(initialWindowHandle)) {
             try {
                 LOGGER.debug("driver.switchTo().window(initialWindowHandle)");
-                driver.switchTo().window(initialWindowHandle);
+                switchToWindow(initialWindowHandle);
             }
             catch (WebDriverException e) {
                 // selenium could now be on an unexpected window
                 LOGGER.warn("Could not switch back to initial window after window iteration. Active window is now unspecified.");
             }
         }
-        return handlesAndTitles;
+        Set<String> windows = new LinkedHashSet<String>();
+        windows.add(initialWindowHandle);
+        windows.addAll(handles);
+        return windowRegistry.getTitles(windows);
+    }
+
+    /** Returns the handles and titles of all open windows, for repeated polling while waiting for windows to open or close.
+     * Each call only queries the handles of the open windows. Titles are only queried if windows have been opened or closed
+     * since the previous call, or if cached titles are empty or outdated, and then only for these windows.
+     * @return a map from the window handles to the window titles */
+    public Map<String, String> pollWindowHandlesAndTitles() {
+        LOGGER.debug("pollWindowHandlesAndTitles()");
+        Set<String> handles = getWindowHandles();
+        if (windowRegistry.isUpToDate(handles)) {
+            return windowRegistry.getTitles(handles);
+        }
+        return getAllWindowHandlesAndTitles();
     }
 
     /** @see Selenium#getAllWindowTitles() */
@@ -579,17 +1126,27 @@ public class Selenium2Wrapper {
     public String[] getAllWindowNames() {
         LOGGER.debug("getAllWindowNames()");
         String current = driver.getWindowHandle();
-        List<String> names = new ArrayList<String>();
-        for (String handle : getWindowHandles()) {
-            LOGGER.debug("driver.switchTo().window(handle)");
-            driver.switchTo().window(handle);
-            names.add(executeScript("return window.name").toString());
-        }
-        LOGGER.debug("driver.switchTo().window(current)");
-        driver.switchTo().window(current);
+        Set<String> handles = getWindowHandles();
+        windowRegistry.retainAll(handles);
+        List<String> outdated = windowRegistry.getHandlesWithoutName(handles);
+        if (!outdated.isEmpty()) {
+            for (String handle : outdated) {
+                LOGGER.debug("driver.switchTo().window(handle)");
+                switchToWindow(handle);
+                windowRegistry.putName(handle, String.valueOf(executeScript("return window.name")));
+            }
+            LOGGER.debug("driver.switchTo().window(current)");
+            switchToWindow(current);
+        }
+        List<String> names = windowRegistry.getNames(handles);
         return names.toArray(new String[names.size()]);
     }
 
+    /** @return the registry caching the titles and names of the windows of this session */
+    public WindowRegistry getWindowRegistry() {
+        return windowRegistry;
+    }
+
     /** @see Selenium#getTitle() */
     public String getTitle() {
         LOGGER.debug("getTitle()");
@@ -681,12 +1238,20 @@ public class Selenium2Wrapper {
     public void switchToIFrame(GUIElementLocator iframeLocator) {
         LOGGER.debug("switchToIFrame({})", iframeLocator);
         if (iframeLocator != null) {
+            // the locator is resolved relative to the current frame, so this is never a no-op: if the current frame has the
+            // same name, a nested frame of that name is meant
+            String frameName = "/" + iframeLocator;
             WebElement element = waitUntilPresent(iframeLocator, configuration.getTimeout());
             element = LocatorSupport.unwrap(element);
             driver.switchTo().frame(element);
+            currentFramePath = (currentFramePath == null ? null : currentFramePath + frameName);
+        }
+        else if ("".equals(currentFramePath)) {
+            LOGGER.debug("Already switched to the top-level document");
         }
         else {
             driver.switchTo().defaultContent();
+            currentFramePath = "";
         }
     }
 
@@ -724,6 +1289,8 @@ public class Selenium2Wrapper {
 
     public void close() {
         LOGGER.debug("close()");
+        currentWindowHandle = null;
+        currentFramePath = null;
         try {
             driver.close();
         }
@@ -797,6 +1364,20 @@ public class Selenium2Wrapper {
         }
     }
 
+    public void addRequestRule(RequestRule rule) {
+        LOGGER.debug("addRequestRule({})", rule);
+        if (proxy != null) {
+            proxy.addRequestRule(rule);
+        }
+    }
+
+    public void clearRequestRules() {
+        LOGGER.debug("clearRequestRules()");
+        if (proxy != null) {
+            proxy.clearRequestRules();
+        }
+    }
+
     // wait features -----------------------------------------------------------
 
     public WebElement waitUntilPresent(GUIElementLocator locator, long timeOutInMillis) {
@@ -1029,9 +1610,15 @@ public class Selenium2Wrapper {
     @SuppressWarnings("unchecked")
     public void waitForAjaxOperationEnd(String frameworkName, int maxWaitTime) {
         frameworkName = frameworkName.toLowerCase(Locale.US);
-        AbstractAjaxIdleCondition condition = null;
+        ExpectedCondition<Boolean> condition = null;
 
-        if ("jquery".equals(frameworkName)) {
+        if ("network".equals(frameworkName)) {
+            if (proxy == null) {
+                throw new AutomationException("AJAX check via network activity requires the local proxy to be used");
+            }
+            condition = new NetworkIdleCondition(proxy, configuration.getNetworkIdleTime());
+        }
+        else if ("jquery".equals(frameworkName)) {
             condition = new JQueryAjaxIdleCondition();
         }
         else if ("primefaces".equals(frameworkName)) {
@@ -1063,10 +1650,103 @@ public class Selenium2Wrapper {
 
     // HTML source and screenshot provision ------------------------------------
 
+    /** Evaluates an XPath in the browser, if it supports it.
+     * @param xpath the XPath to evaluate.
+     * @return the matching nodes, detached from their ancestors, or <code>null</code> if the XPath could not be evaluated in
+     *         the browser. */
+    public NodeList evalXPathInBrowser(String xpath) {
+        LOGGER.debug("evalXPathInBrowser({})", xpath);
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            return BrowserXPath.toNodeList((List<?>) executeScript(BrowserXPath.NODES_SCRIPT, xpath));
+        }
+        catch (WebDriverException e) {
+            LOGGER.debug("Could not evaluate XPath in browser", e);
+            return null;
+        }
+    }
+
+    /** Evaluates an XPath in the browser to a string, if it supports it.
+     * @param xpath the XPath to evaluate.
+     * @return the string value of the result, or <code>null</code> if the XPath could not be evaluated in the browser. */
+    public String evalXPathAsStringInBrowser(String xpath) {
+        LOGGER.debug("evalXPathAsStringInBrowser({})", xpath);
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            Object result = executeScript(BrowserXPath.STRING_SCRIPT, xpath);
+            return (result == null ? "" : result.toString());
+        }
+        catch (WebDriverException e) {
+            LOGGER.debug("Could not evaluate XPath in browser", e);
+            return null;
+        }
+    }
+
+    /** @return the partition of the {@link DocCache} to use for the documents of this session and the current frame */
+    public String getDocCachePartition() {
+        if (currentFramePath == null || currentFramePath.length() == 0) {
+            return docCachePartition;
+        }
+        return docCachePartition + "/frame" + currentFramePath;
+    }
+
+    public String getPageSourceText() {
+        LOGGER.debug("getPageSourceText()");
+        return driver.getPageSource();
+    }
+
     public Attachment getPageSource() {
         LOGGER.debug("getPageSource()");
         String pageSource = driver.getPageSource();
-        return new StringAttachment("Source", pageSource, configuration.getPageSourceAttachmentExtension());
+        if (configuration.isPageSourceStripScripts()) {
+            pageSource = SCRIPT_STYLE_CONTENT_PATTERN.matcher(pageSource).replaceAll("$1$3");
+        }
+        int maxChars = configuration.getPageSourceMaxSize() * 1024;
+        if (maxChars > 0 && pageSource.length() > maxChars) {
+            if (Character.isHighSurrogate(pageSource.charAt(maxChars - 1))) {
+                maxChars--;
+            }
+            pageSource = pageSource.substring(0, maxChars) + "\n<!-- page source truncated after " + maxChars + " of "
+                    + pageSource.length() + " characters -->";
+        }
+        String extension = configuration.getPageSourceAttachmentExtension();
+        if (!configuration.isPageSourceCompression()) {
+            return new StringAttachment("Source", pageSource, extension);
+        }
+        // encode directly into the compressed stream to avoid an uncompressed UTF-8 copy of the source
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pageSource.length() / 8 + 64);
+        try {
+            Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), DataUtil.UTF_8);
+            writer.write(pageSource);
+            writer.close();
+        }
+        catch (IOException e) {
+            // should never happen on a memory stream
+            throw new TechnicalException("Could not compress page source", e);
+        }
+        return new BinaryAttachment("Source", out.toByteArray(), extension + ".gz");
+    }
+
+    public Attachment getNetworkTraffic() {
+        LOGGER.debug("getNetworkTraffic()");
+        TrafficCapture capture = (proxy != null ? proxy.getTrafficCapture() : null);
+        if (capture == null || capture.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out, DataUtil.UTF_8);
+        try {
+            capture.writeHar(writer);
+        }
+        catch (IOException e) {
+            // should never happen on a memory stream
+            throw new TechnicalException("Could not write network traffic", e);
+        }
+        return new BinaryAttachment("Network Traffic", out.toByteArray(), "har");
     }
 
     public List<Attachment> getWindowsScreenshots() {
@@ -1077,8 +1757,6 @@ public class Selenium2Wrapper {
             return Collections.emptyList();
         }
 
-        Base64 base64 = new Base64();
-
         Set<String> windowHandles;
         String activeHandle;
         try {
@@ -1103,14 +1781,14 @@ public class Selenium2Wrapper {
 
         int index = 0;
         for (String handle : windowHandles) {
-            driver.switchTo().window(handle);
+            switchToWindow(handle);
             try {
+                // only capturing must happen on this thread; decoding is done in the background
                 String data = captureActiveWindowScreenshotToString();
-                byte[] decodedData = base64.decode(data);
                 String title = driver.getTitle();
 
-                result.add(new BinaryAttachment("Screenshot-" + (title == null ? "" + (++index) : title), decodedData,
-                        configuration.getScreenshotAttachmentExtension()));
+                result.add(screenshotStore.createAttachment(handle, "Screenshot-" + (title == null ? "" + (++index) : title),
+                        data, configuration.getScreenshotAttachmentExtension()));
             }
             catch (UnhandledAlertException e) {
                 // examine alert; make screenshot of whole screen
@@ -1147,7 +1825,7 @@ public class Selenium2Wrapper {
         }
 
         try {
-            driver.switchTo().window(activeHandle);
+            switchToWindow(activeHandle);
         }
         catch (NoSuchWindowException e) {
             if (LOGGER.isDebugEnabled()) {
@@ -1161,13 +1839,19 @@ public class Selenium2Wrapper {
         return result;
     }
 
+    public ScreenshotStore getScreenshotStore() {
+        return screenshotStore;
+    }
+
     public String captureActiveWindowScreenshotToString() {
-        WebDriver screenshotDriver;
-        if (RemoteWebDriver.class.isAssignableFrom(driver.getClass())) {
-            screenshotDriver = new Augmenter().augment(driver);
-        }
-        else {
-            screenshotDriver = driver;
+        // augmenting creates a new proxy class instance, so do it only once per driver
+        if (screenshotDriver == null) {
+            if (RemoteWebDriver.class.isAssignableFrom(driver.getClass())) {
+                screenshotDriver = new Augmenter().augment(driver);
+            }
+            else {
+                screenshotDriver = driver;
+            }
         }
         if (screenshotDriver instanceof TakesScreenshot) {
             TakesScreenshot tsDriver = (TakesScreenshot) screenshotDriver;
@@ -1178,6 +1862,99 @@ public class Selenium2Wrapper {
         }
     }
 
+    /** Captures a screenshot of the bounding box of an element, extended by a margin. Without margin, the element screenshot
+     * command is used if the driver supports it. Otherwise, a screenshot of the active window is cropped to the box.
+     * @param locator the locator of the element.
+     * @param margin the number of pixels to include around the element.
+     * @return the Base64 encoded PNG screenshot. */
+    public String captureElementScreenshotToString(GUIElementLocator locator, int margin) {
+        LOGGER.debug("captureElementScreenshotToString({}, {})", locator, margin);
+        WebElement element = LocatorSupport.unwrap(findElementImmediately(locator));
+        if (margin == 0) {
+            String data = captureNativeElementScreenshot(element);
+            if (data != null) {
+                return data;
+            }
+        }
+        return captureCroppedScreenshot(element, margin);
+    }
+
+    /** Captures a screenshot of the element used by the last operation, if that operation has not completed successfully.
+     * @return the screenshot of the element, including the configured margin, or <code>null</code> if there is no such
+     *         element or it cannot be located. */
+    public Attachment getLastElementScreenshot() {
+        GUIElementLocator locator = this.lastLocator;
+        if (locator == null || driver == null) {
+            return null;
+        }
+        try {
+            String data = captureElementScreenshotToString(locator, configuration.getScreenshotElementMargin());
+            return screenshotStore.createAttachment(locator.toString(), "Screenshot-Element", data,
+                    configuration.getScreenshotAttachmentExtension());
+        }
+        catch (Exception e) { // NOSONAR
+            LOGGER.debug("Could not take element screenshot; falling back to window screenshots", e);
+            return null;
+        }
+    }
+
+    private String captureNativeElementScreenshot(WebElement element) {
+        if (Boolean.FALSE.equals(elementScreenshotSupported) || !(driver instanceof RemoteWebDriver)
+                || !(element instanceof RemoteWebElement)
+                || !(((RemoteWebDriver) driver).getCommandExecutor() instanceof AludraSeleniumHttpCommandExecutor)) {
+            return null;
+        }
+        RemoteWebDriver remoteDriver = (RemoteWebDriver) driver;
+        try {
+            Response response = remoteDriver.getCommandExecutor().execute(
+                    new Command(remoteDriver.getSessionId(), AludraSeleniumHttpCommandExecutor.ELEMENT_SCREENSHOT, Collections
+                            .singletonMap("id", ((RemoteWebElement) element).getId())));
+            if (response.getStatus() == 0 && response.getValue() instanceof String) {
+                elementScreenshotSupported = Boolean.TRUE;
+                return (String) response.getValue();
+            }
+        }
+        catch (Exception e) { // NOSONAR
+            LOGGER.debug("Element screenshot command failed", e);
+        }
+        // remember for this session, to avoid the additional round trip for every screenshot
+        elementScreenshotSupported = Boolean.FALSE;
+        return null;
+    }
+
+    private String captureCroppedScreenshot(WebElement element, int margin) {
+        List<?> box = (List<?>) executeScript(ELEMENT_BOX_SCRIPT, element);
+        String data = captureActiveWindowScreenshotToString();
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(Base64.decodeBase64(data)));
+            if (image == null) {
+                return data;
+            }
+            double ratio = ((Number) box.get(7)).doubleValue();
+            double left = ((Number) box.get(0)).doubleValue();
+            double top = ((Number) box.get(1)).doubleValue();
+            // some drivers capture the whole page instead of the viewport; then, the box is relative to the page
+            if (image.getHeight() > Math.ceil(((Number) box.get(6)).doubleValue() * ratio)) {
+                left += ((Number) box.get(4)).doubleValue();
+                top += ((Number) box.get(5)).doubleValue();
+            }
+            int x1 = Math.max(0, (int) Math.floor((left - margin) * ratio));
+            int y1 = Math.max(0, (int) Math.floor((top - margin) * ratio));
+            int x2 = Math.min(image.getWidth(), (int) Math.ceil((left + ((Number) box.get(2)).doubleValue() + margin) * ratio));
+            int y2 = Math.min(image.getHeight(), (int) Math.ceil((top + ((Number) box.get(3)).doubleValue() + margin) * ratio));
+            if (x2 <= x1 || y2 <= y1) {
+                // element is not in the captured area
+                return data;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image.getSubimage(x1, y1, x2 - x1, y2 - y1), "png", out);
+            return Base64.encodeBase64String(out.toByteArray());
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Could not crop screenshot", e);
+        }
+    }
+
     // element highlighting ----------------------------------------------------
 
     private void removeHighlight() {
@@ -1278,22 +2055,23 @@ public class Selenium2Wrapper {
         return element.getAttribute("value");
     }
 
+    private void type(WebElement element, String value) {
+        if (configuration.isTypeSafemode()) {
+            // activate element with a click
+            element.click();
+            element = driver.switchTo().activeElement();
+            element.clear();
+        }
+
+        // setValue instead of sendKeys to ensure field is reset, and to work with file component
+        setValue(element, value);
+    }
+
     private void setValue(WebElement element, String value) {
         LOGGER.debug("setValue(WebElement, {})", value);
-        String text;
-        int tryCounter = 3;
-        while (tryCounter > 0 && !DataMarkerCheck.isNull(text = getValue(element))) {
-            sendKeys(element, Keys.END);
-            int length = text.length();
-            String[] arr = new String[length];
-            for (int i = 0; i < length; i++) {
-                arr[i] = "\b";
-            }
-            sendKeys(element, arr);
-            tryCounter--;
-        }
-        if (tryCounter == 0) {
-            throw new AutomationException("Could not clear input field. Maybe covered by other component?");
+        String text = getValue(element);
+        if (!DataMarkerCheck.isNull(text)) {
+            clearValue(element, text);
         }
         sendKeys(element, value);
 
@@ -1324,29 +2102,89 @@ public class Selenium2Wrapper {
         }
     }
 
+    private void clearValue(WebElement element, String text) {
+        if (clearStrategy == null) {
+            // detect the first strategy which reliably clears the field, and use it for the rest of the session
+            for (ClearStrategy candidate : new ClearStrategy[] { ClearStrategy.SELECT_ALL, ClearStrategy.SCRIPT }) {
+                try {
+                    clearValue(element, candidate);
+                    if (DataMarkerCheck.isNull(getValue(element))) {
+                        LOGGER.debug("Using clear strategy {}", candidate);
+                        clearStrategy = candidate;
+                        return;
+                    }
+                }
+                catch (WebDriverException e) {
+                    LOGGER.debug("Clear strategy " + candidate + " failed", e);
+                }
+            }
+            LOGGER.debug("Using clear strategy {}", ClearStrategy.BACKSPACE);
+            clearStrategy = ClearStrategy.BACKSPACE;
+            text = getValue(element);
+        }
+        else if (clearStrategy != ClearStrategy.BACKSPACE) {
+            clearValue(element, clearStrategy);
+            // a strategy which works for most fields may still fail for some, e.g. if a key handler restores the value
+            text = getValue(element);
+            if (DataMarkerCheck.isNull(text)) {
+                return;
+            }
+            LOGGER.debug("Clear strategy {} did not clear the field, falling back to {}", clearStrategy,
+                    ClearStrategy.BACKSPACE);
+        }
+        int tryCounter = 3;
+        while (tryCounter > 0 && !DataMarkerCheck.isNull(text)) {
+            clearValue(element, ClearStrategy.BACKSPACE, text.length());
+            text = getValue(element);
+            tryCounter--;
+        }
+        if (!DataMarkerCheck.isNull(text)) {
+            throw new AutomationException("Could not clear input field. Maybe covered by other component?");
+        }
+    }
+
+    private void clearValue(WebElement element, ClearStrategy strategy) {
+        clearValue(element, strategy, 0);
+    }
+
+    private void clearValue(WebElement element, ClearStrategy strategy, int length) {
+        switch (strategy) {
+            case SELECT_ALL:
+                Keys modifier = (isMacPlatform() ? Keys.COMMAND : Keys.CONTROL);
+                sendKeys(element, Keys.chord(modifier, "a"), Keys.DELETE);
+                break;
+            case SCRIPT:
+                executeScript(CLEAR_SCRIPT, element);
+                break;
+            default:
+                sendKeys(element, Keys.END);
+                String[] arr = new String[length];
+                for (int i = 0; i < length; i++) {
+                    arr[i] = "\b";
+                }
+                sendKeys(element, arr);
+        }
+    }
+
+    private boolean isMacPlatform() {
+        if (driver instanceof HasCapabilities) {
+            Platform platform = ((HasCapabilities) driver).getCapabilities().getPlatform();
+            return platform != null && platform.is(Platform.MAC);
+        }
+        return false;
+    }
+
     private String getSelectedLabel(WebElement element) {
         LOGGER.debug("getSelectedLabel(WebElement)");
-        Select select = new Select(element);
-        return select.getFirstSelectedOption().getText();
+        String label = locatorSupport.getDropDownSupport().getSelectedLabel(element);
+        if (label == null) {
+            throw new NoSuchElementException("No options are selected");
+        }
+        return label;
     }
 
     private void select(final OptionLocator optionLocator, WebElement element) {
-        LOGGER.debug("select({}, WebElement)", optionLocator);
-        Select select = new Select(element);
-        try {
-            if (optionLocator instanceof org.aludratest.service.locator.option.LabelLocator) {
-                select.selectByVisibleText(((org.aludratest.service.locator.option.LabelLocator) optionLocator).getLabel());
-            }
-            else if (optionLocator instanceof IndexLocator) {
-                select.selectByIndex(((IndexLocator) optionLocator).getIndex());
-            }
-            else {
-                throw ServiceUtil.newUnsupportedLocatorException(optionLocator);
-            }
-        }
-        catch (NoSuchElementException e) {
-            throw new AutomationException("Selection Item not found");
-        }
+        locatorSupport.getDropDownSupport().select(element, optionLocator);
     }
 
     private void click(WebElement element) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import org.aludratest.exception.PerformanceFailure;
+import org.aludratest.service.gui.web.selenium.SystemActivityListener;
+import org.aludratest.service.gui.web.selenium.SystemActivityNotifier;
+import org.aludratest.service.util.SystemBusyIndicator;
+
+/** Tracks the activity notifications of a {@link SystemActivityNotifier} and waits for them, providing the same waits as
+ * {@link org.aludratest.service.util.TaskCompletionUtil}. Waiting threads are woken up as soon as a notification arrives. If a
+ * {@link SystemBusyIndicator} is available, it is additionally polled at the polling interval. */
+final class SystemActivityMonitor implements SystemActivityListener {
+
+    private final SystemActivityNotifier notifier;
+
+    private final SystemBusyIndicator busyIndicator;
+
+    private int activeCount;
+
+    private long startedCount;
+
+    SystemActivityMonitor(SystemActivityNotifier notifier, SystemBusyIndicator busyIndicator) {
+        this.notifier = notifier;
+        this.busyIndicator = busyIndicator;
+        notifier.addActivityListener(this);
+    }
+
+    SystemActivityNotifier getNotifier() {
+        return notifier;
+    }
+
+    /** Unregisters this monitor from its notifier. */
+    void dispose() {
+        notifier.removeActivityListener(this);
+    }
+
+    @Override
+    public synchronized void activityStarted() {
+        activeCount++;
+        startedCount++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void activityFinished() {
+        if (activeCount > 0) {
+            activeCount--;
+        }
+        notifyAll();
+    }
+
+    /** @return the number of activities which have been started so far, to be passed to
+     *         {@link #waitForActivityAndCompletion(long, String, int, int, int)} */
+    synchronized long getActivityCount() {
+        return startedCount;
+    }
+
+    /** Waits for the system to become busy, and then for the system to complete its activity.
+     * @param activityMark the result of {@link #getActivityCount()} before the interaction; activities started since then
+     *            count as observed, even if they have already been finished.
+     * @param failureMessage the message of the failure to throw if the system does not complete its activity in time.
+     * @param startTimeout the maximum number of milliseconds to wait for activity.
+     * @param completionTimeout the maximum number of milliseconds to wait in total.
+     * @param pollingInterval the interval in which the busy indicator is polled, if available.
+     * @return <code>true</code> if activity has been observed, <code>false</code> otherwise.
+     * @throws PerformanceFailure if the system did not complete its activity within the timeout. */
+    boolean waitForActivityAndCompletion(long activityMark, String failureMessage, int startTimeout, int completionTimeout,
+            int pollingInterval) {
+        long start = System.currentTimeMillis();
+        if (!awaitActivity(activityMark, start + startTimeout, pollingInterval)) {
+            return false;
+        }
+        waitUntilNotBusy(completionTimeout - (int) (System.currentTimeMillis() - start), pollingInterval, failureMessage);
+        return true;
+    }
+
+    /** Waits until the system is not busy.
+     * @param timeout the maximum number of milliseconds to wait.
+     * @param pollingInterval the interval in which the busy indicator is polled, if available.
+     * @param failureMessage the message of the failure to throw if the system remains busy.
+     * @throws PerformanceFailure if the system remains busy exceeding the timeout. */
+    void waitUntilNotBusy(int timeout, int pollingInterval, String failureMessage) {
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (true) {
+                if (!isNotifiedBusy() && !isPolledBusy()) {
+                    return;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new PerformanceFailure(failureMessage);
+                }
+                synchronized (this) {
+                    if (activeCount > 0 || busyIndicator != null) {
+                        wait(Math.min(remaining, pollingInterval));
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean awaitActivity(long activityMark, long deadline, int pollingInterval) {
+        try {
+            while (true) {
+                if (hasActivity(activityMark) || isPolledBusy()) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                synchronized (this) {
+                    if (hasActivity(activityMark)) {
+                        return true;
+                    }
+                    wait(Math.min(remaining, pollingInterval));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized boolean hasActivity(long activityMark) {
+        return startedCount > activityMark || activeCount > 0;
+    }
+
+    private synchronized boolean isNotifiedBusy() {
+        return activeCount > 0;
+    }
+
+    private boolean isPolledBusy() {
+        return busyIndicator != null && busyIndicator.isBusy();
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Caches the titles and names of the windows of a session by window handle, so enumerating the windows only requires
+ * switching to windows which are new or whose cached information is outdated. The registry does not communicate with the
+ * browser itself; the {@link Selenium2Wrapper} asks it which handles need to be queried and reports the results. Empty titles
+ * are never considered up to date, as they usually belong to windows which are still loading. */
+public class WindowRegistry {
+
+    private final long maxAge;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private long hits;
+
+    private long misses;
+
+    /** Creates a new registry.
+     * @param maxAge the number of milliseconds for which cached titles and names are considered up to date. 0 disables
+     *            caching. */
+    public WindowRegistry(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /** Removes all windows which are not contained in the given handles, i.e. which have been closed.
+     * @param handles the handles of the currently open windows. */
+    public synchronized void retainAll(Collection<String> handles) {
+        entries.keySet().retainAll(handles);
+    }
+
+    /** Indicates if the registry knows exactly the given windows with up-to-date titles, i.e. if no window has been opened or
+     * closed since the last enumeration and no title has to be queried again.
+     * @param handles the handles of the currently open windows.
+     * @return <code>true</code> if the cached titles of the windows can be used without querying the browser. */
+    public synchronized boolean isUpToDate(Collection<String> handles) {
+        if (handles.size() != entries.size()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (String handle : handles) {
+            Entry entry = entries.get(handle);
+            if (entry == null || entry.title == null || entry.title.length() == 0 || now - entry.titleTime >= maxAge) {
+                return false;
+            }
+        }
+        hits += handles.size();
+        return true;
+    }
+
+    /** Returns the handles whose titles have to be queried from the browser.
+     * @param handles the handles of the currently open windows.
+     * @return the handles of all windows without an up-to-date title. */
+    public synchronized List<String> getHandlesWithoutTitle(Collection<String> handles) {
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<String>();
+        for (String handle : handles) {
+            Entry entry = entries.get(handle);
+            if (entry != null && entry.title != null && entry.title.length() > 0 && now - entry.titleTime < maxAge) {
+                hits++;
+            }
+            else {
+                misses++;
+                result.add(handle);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the handles whose names have to be queried from the browser.
+     * @param handles the handles of the currently open windows.
+     * @return the handles of all windows without an up-to-date name. */
+    public synchronized List<String> getHandlesWithoutName(Collection<String> handles) {
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<String>();
+        for (String handle : handles) {
+            Entry entry = entries.get(handle);
+            if (entry != null && entry.name != null && now - entry.nameTime < maxAge) {
+                hits++;
+            }
+            else {
+                misses++;
+                result.add(handle);
+            }
+        }
+        return result;
+    }
+
+    /** Records the current title of a window.
+     * @param handle the handle of the window.
+     * @param title the title of the window. */
+    public synchronized void putTitle(String handle, String title) {
+        Entry entry = getOrCreateEntry(handle);
+        entry.title = title;
+        entry.titleTime = System.currentTimeMillis();
+    }
+
+    /** Records the current name of a window.
+     * @param handle the handle of the window.
+     * @param name the name of the window. */
+    public synchronized void putName(String handle, String name) {
+        Entry entry = getOrCreateEntry(handle);
+        entry.name = name;
+        entry.nameTime = System.currentTimeMillis();
+    }
+
+    /** Returns the handle of a window with the given cached title. The title may be outdated, so callers have to verify it.
+     * @param title the title to search.
+     * @return the handle of the window, or <code>null</code> if no window with this title is known. */
+    public synchronized String findHandleByTitle(String title) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (title.equals(entry.getValue().title)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /** Returns the cached titles of the given windows.
+     * @param handles the handles of the windows.
+     * @return a map from the handles to the titles, in the order of the handles, omitting windows with unknown titles. */
+    public synchronized Map<String, String> getTitles(Collection<String> handles) {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String handle : handles) {
+            Entry entry = entries.get(handle);
+            if (entry != null && entry.title != null) {
+                result.put(handle, entry.title);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the cached names of the given windows.
+     * @param handles the handles of the windows.
+     * @return the names, in the order of the handles, omitting windows with unknown names. */
+    public synchronized List<String> getNames(Collection<String> handles) {
+        List<String> result = new ArrayList<String>();
+        for (String handle : handles) {
+            Entry entry = entries.get(handle);
+            if (entry != null && entry.name != null) {
+                result.add(entry.name);
+            }
+        }
+        return result;
+    }
+
+    /** Removes a window from the registry, e.g. because it could not be queried.
+     * @param handle the handle of the window. */
+    public synchronized void remove(String handle) {
+        entries.remove(handle);
+    }
+
+    /** Removes all windows from the registry. */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /** @return the number of window lookups which have been answered from the registry. */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /** @return the number of window lookups which required a query of the browser. */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private Entry getOrCreateEntry(String handle) {
+        Entry entry = entries.get(handle);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(handle, entry);
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private String title;
+
+        private long titleTime;
+
+        private String name;
+
+        private long nameTime;
+
+    }
+
+}
@@ -19,11 +19,11 @@ import java.util.List;
 
 import org.aludratest.service.gui.web.selenium.selenium2.LocatorSupport;
 import org.aludratest.service.locator.element.GUIElementLocator;
+import org.openqa.selenium.By;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.Select;
 
 /** Collects specific property values of all options of a drop down box. If one of the internal checks fails, the failure message
  * is reported in the {@link #message} property.
@@ -73,13 +73,20 @@ public class AnyDropDownOptions implements ExpectedCondition<String[]> {
             this.message = "Element not found";
             return null;
         }
-        Select select = new Select(element);
-        List<WebElement> options = select.getOptions();
-        String[] values = new String[options.size()];
-        for (int i = 0; i < options.size(); i++) {
-            values[i] = options.get(i).getAttribute(propertyName);
+        if (DROPDOWN_OPTION_VALUE_PROPERTY.equals(propertyName)) {
+            return locatorSupport.getDropDownSupport().getValues(element);
+        }
+        else if (DROPDOWN_OPTION_LABEL_PROPERTY.equals(propertyName)) {
+            return locatorSupport.getDropDownSupport().getLabels(element);
+        }
+        else {
+            List<WebElement> options = element.findElements(By.tagName("option"));
+            String[] values = new String[options.size()];
+            for (int i = 0; i < options.size(); i++) {
+                values[i] = options.get(i).getAttribute(propertyName);
+            }
+            return values;
         }
-        return values;
     }
 
     /** Creates an instance that provides the options' labels.
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2.condition;
+
+import org.aludratest.service.gui.web.selenium.httpproxy.AuthenticatingHttpProxy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+/** Checks if the local proxy of a session has not seen any request activity for a given time. In contrast to the
+ * JavaScript-based {@link AbstractAjaxIdleCondition}s, this works independently of the AJAX framework of the application under
+ * test and does not need any round trip to the browser. */
+public class NetworkIdleCondition implements ExpectedCondition<Boolean> {
+
+    private final AuthenticatingHttpProxy proxy;
+
+    private final long quietMillis;
+
+    /** Constructor.
+     * @param proxy the local proxy of the session.
+     * @param quietMillis the time in milliseconds for which no request must have been started or finished. */
+    public NetworkIdleCondition(AuthenticatingHttpProxy proxy, long quietMillis) {
+        this.proxy = proxy;
+        this.quietMillis = quietMillis;
+    }
+
+    @Override
+    public Boolean apply(WebDriver input) {
+        return Boolean.valueOf(proxy.isIdle(quietMillis));
+    }
+
+    @Override
+    public String toString() {
+        return "no network activity for " + quietMillis + " ms";
+    }
+
+}
@@ -18,7 +18,6 @@ package org.aludratest.service.gui.web.selenium.selenium2.condition;
 import org.aludratest.service.gui.web.selenium.selenium2.LocatorSupport;
 import org.aludratest.service.locator.element.GUIElementLocator;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.Select;
 
 /** Checks if an element has a selected option. If one of the internal checks fails, the failure message is reported in the
  * {@link #message} property.
@@ -34,8 +33,7 @@ public class OptionSelected extends StringCondition {
 
     @Override
     protected String applyOnElement(WebElement element) {
-        Select select = new Select(element);
-        String text = select.getFirstSelectedOption().getText();
+        String text = locatorSupport.getDropDownSupport().getSelectedLabel(element);
         if (text == null) {
             this.message = "No option selected";
             return null;
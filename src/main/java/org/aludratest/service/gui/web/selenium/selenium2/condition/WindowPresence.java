@@ -15,6 +15,8 @@
  */
 package org.aludratest.service.gui.web.selenium.selenium2.condition;
 
+import java.util.Collection;
+
 import org.aludratest.service.gui.web.selenium.selenium2.Selenium2Wrapper;
 import org.aludratest.service.locator.window.TitleLocator;
 import org.aludratest.service.locator.window.WindowLocator;
@@ -22,7 +24,8 @@ import org.openqa.selenium.NoSuchWindowException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 
-/** Checks the presence of a window.
+/** Checks the presence of a window. As the condition is polled, it uses {@link Selenium2Wrapper#pollWindowHandlesAndTitles()},
+ * which only queries window titles when the set of open windows changes.
  * @author Volker Bergmann */
 public class WindowPresence implements ExpectedCondition<Boolean> {
 
@@ -43,9 +46,9 @@ public class WindowPresence implements ExpectedCondition<Boolean> {
     @Override
     public Boolean apply(WebDriver input) {
         final String searchedTitle = locator.getTitle();
-        final String[] titles;
+        final Collection<String> titles;
         try {
-            titles = wrapper.getAllWindowTitles();
+            titles = wrapper.pollWindowHandlesAndTitles().values();
         }
         catch (NoSuchWindowException e) {
             // ignore (just closed); try in next scan
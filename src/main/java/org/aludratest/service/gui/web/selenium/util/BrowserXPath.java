@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Support for evaluating XPaths in the browser using <code>document.evaluate</code>, so only the matching nodes instead of the
+ * whole page source have to be transferred. The scripts return the matching nodes in serialized form, which
+ * {@link #toNodeList(List)} materializes as detached W3C nodes. As the nodes are detached, their ancestors and siblings are not
+ * available. */
+public final class BrowserXPath {
+
+    /** Script evaluating the XPath given as first argument, and returning an array of
+     * <code>[nodeType, nodeName, parentNodeName, content]</code> arrays for the matching nodes. The content is the outer HTML
+     * for elements and documents, and the node value for other nodes. */
+    public static final String NODES_SCRIPT = "var r = document.evaluate(arguments[0], document, null, "
+            + "XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null), out = []; "
+            + "for (var i = 0; i < r.snapshotLength; i++) { var n = r.snapshotItem(i); "
+            + "if (n.nodeType == 9) { n = n.documentElement; } "
+            + "out.push([n.nodeType, n.nodeName, n.parentNode ? n.parentNode.nodeName : '', "
+            + "n.nodeType == 1 ? n.outerHTML : n.nodeValue]); } return out;";
+
+    /** Script evaluating the XPath given as first argument to a string. */
+    public static final String STRING_SCRIPT = "var r = document.evaluate(arguments[0], document, null, "
+            + "XPathResult.STRING_TYPE, null); return r.stringValue;";
+
+    private static final int ELEMENT_NODE = 1;
+
+    private static final int ATTRIBUTE_NODE = 2;
+
+    private static final int COMMENT_NODE = 8;
+
+    private BrowserXPath() {
+    }
+
+    /** Materializes the result of {@link #NODES_SCRIPT}.
+     * @param serializedNodes the result of the script.
+     * @return the matching nodes, as detached nodes of a new namespace-free W3C document. */
+    public static NodeList toNodeList(List<?> serializedNodes) {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        }
+        catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        // scratch parent for converting elements; each converted element is removed from it again
+        Element container = document.createElement("xpath-result");
+
+        W3CDom converter = new W3CDom(false);
+        List<Node> result = new ArrayList<Node>(serializedNodes.size());
+        for (Object serializedNode : serializedNodes) {
+            List<?> info = (List<?>) serializedNode;
+            int type = ((Number) info.get(0)).intValue();
+            String name = (String) info.get(1);
+            String parentName = (String) info.get(2);
+            String content = (String) info.get(3);
+            if (type == ELEMENT_NODE) {
+                org.jsoup.nodes.Element element = parseElement(content, name, parentName);
+                if (element != null) {
+                    converter.appendTo(element, container);
+                    result.add(container.removeChild(container.getLastChild()));
+                }
+            }
+            else if (type == ATTRIBUTE_NODE) {
+                Attr attr = document.createAttribute(name);
+                attr.setValue(content);
+                result.add(attr);
+            }
+            else if (type == COMMENT_NODE) {
+                result.add(document.createComment(content));
+            }
+            else {
+                result.add(document.createTextNode(content));
+            }
+        }
+        return new ListNodeList(result);
+    }
+
+    /** Parses the outer HTML of a matching element.
+     * @return the parsed element, or <code>null</code> if the HTML did not yield any element. */
+    private static org.jsoup.nodes.Element parseElement(String outerHtml, String name, String parentName) {
+        List<org.jsoup.nodes.Node> nodes;
+        if (parentName.startsWith("#")) {
+            // root element of the document
+            nodes = new ArrayList<org.jsoup.nodes.Node>(Jsoup.parse(outerHtml).children());
+        }
+        else {
+            // parse in the context of the parent, so e.g. table rows are not dropped by the HTML tree builder
+            org.jsoup.nodes.Element context = new org.jsoup.nodes.Element(Tag.valueOf(parentName.toLowerCase()), "");
+            nodes = Parser.parseFragment(outerHtml, context, "");
+        }
+        // the tree builder may add implied elements, e.g. a head before a body, so pick the element by its name
+        org.jsoup.nodes.Element first = null;
+        for (org.jsoup.nodes.Node node : nodes) {
+            if (node instanceof org.jsoup.nodes.Element) {
+                if (node.nodeName().equalsIgnoreCase(name)) {
+                    return (org.jsoup.nodes.Element) node;
+                }
+                if (first == null) {
+                    first = (org.jsoup.nodes.Element) node;
+                }
+            }
+        }
+        return first;
+    }
+
+}
@@ -15,12 +15,11 @@
  */
 package org.aludratest.service.gui.web.selenium.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -28,13 +27,11 @@ import javax.xml.xpath.XPathFactory;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.service.locator.element.XPathLocator;
-import org.aludratest.util.MostRecentUseCache;
 import org.jsoup.Jsoup;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
-/** Utility class containing a static MRU cache for parsed HTML documents to enable faster XPath evaluations.
+/** Utility class containing a static, size-bounded LRU cache for parsed HTML documents to enable faster XPath evaluations.
  * 
  * @author falbrech */
 public final class DocCache {
@@ -42,49 +39,183 @@ public final class DocCache {
     private DocCache() {
     }
 
-    private static final MostRecentUseCache.Factory<String, Document> docFactory = new MostRecentUseCache.Factory<String, Document>() {
+    /** Rough estimate of the heap used by a W3C DOM and the HTML source it is kept with, per character of the HTML source. */
+    private static final int DOM_BYTES_PER_CHAR = 12;
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+
+    /* Pages of at least this number of characters are evaluated by StreamingXPath, if the XPath is supported by it. 0 disables
+     * streaming evaluation. */
+    private static volatile int streamingThreshold;
+
+    private static final AtomicLong streamingEvaluations = new AtomicLong();
+
+    /* Cache for HTML -> DOM mappings. If executing several XPaths on same HTML, this increases performance significantly. The
+     * documents are looked up by a hash of their contents; on a hit, the cached HTML is compared with the requested one, so a
+     * hash collision cannot return the DOM of another page. */
+    private static volatile DocumentCache docCache = new DocumentCache(DEFAULT_MAX_BYTES, false);
+
+    /** Configures the document cache. If the cache settings differ from the current ones, the cache is replaced by an empty one.
+     * @param maxBytes the maximum estimated heap size of all cached documents, in bytes.
+     * @param softValues if <code>true</code>, the garbage collector may reclaim cached documents under memory pressure.
+     * @param streamingThreshold the minimum number of characters of a page to evaluate supported XPaths with
+     *            {@link StreamingXPath} instead of building a DOM, or 0 to always build a DOM. */
+    public static synchronized void configure(long maxBytes, boolean softValues, int streamingThreshold) {
+        if (docCache.getMaxBytes() != maxBytes || docCache.isSoftValues() != softValues) {
+            docCache = new DocumentCache(maxBytes, softValues);
+        }
+        DocCache.streamingThreshold = streamingThreshold;
+    }
+
+    /** Removes all documents of a partition from the cache, e.g. when the session using the partition is closed.
+     * @param partition the partition. */
+    public static void invalidatePartition(String partition) {
+        docCache.removeAll(partition + "/");
+    }
+
+    /** @return the number of XPath evaluations which found the document in the cache. */
+    public static long getDocumentCacheHitCount() {
+        return docCache.getHitCount();
+    }
+
+    /** @return the number of XPath evaluations which had to parse the document. */
+    public static long getDocumentCacheMissCount() {
+        return docCache.getMissCount();
+    }
+
+    /** @return the number of XPath evaluations which have been performed by {@link StreamingXPath}. */
+    public static long getStreamingEvaluationCount() {
+        return streamingEvaluations.get();
+    }
+
+    /** @return the number of documents which have been evicted from the cache to stay within its size bound. */
+    public static long getDocumentCacheEvictionCount() {
+        return docCache.getEvictionCount();
+    }
+
+    /** @return the estimated heap size of all cached documents, in bytes. */
+    public static long getDocumentCacheEstimatedBytes() {
+        return docCache.getEstimatedBytes();
+    }
+
+    /** @return the number of cached documents. */
+    public static int getDocumentCacheSize() {
+        return docCache.size();
+    }
+
+    private static StreamingXPath getStreamingXPath(String xpath, String html) {
+        int threshold = streamingThreshold;
+        if (threshold <= 0 || html.length() < threshold) {
+            return null;
+        }
+        StreamingXPath streamingXPath = StreamingXPath.compile(xpath);
+        if (streamingXPath != null) {
+            streamingEvaluations.incrementAndGet();
+        }
+        return streamingXPath;
+    }
+
+    private static Document getDocument(String html, String partition) {
+        String key = (partition == null ? "" : partition) + "/" + contentHash(html);
+        DocumentCache cache = docCache;
+        Document document = cache.get(key, html);
+        if (document == null) {
+            // build a namespace-free DOM directly, so XPaths without prefixes also match XHTML documents
+            document = new W3CDom(false).fromJsoup(Jsoup.parse(html));
+            document.normalize();
+            cache.put(key, html, document, (long) html.length() * DOM_BYTES_PER_CHAR);
+        }
+        return document;
+    }
+
+    /* Neither XPath objects nor compiled expressions are thread-safe, so each thread gets its own XPath object and its own
+     * bounded LRU map of compiled expressions. */
+    private static final int MAX_COMPILED_XPATHS = 256;
+
+    private static final ThreadLocal<XPath> xpathObjects = new ThreadLocal<XPath>() {
         @Override
-        public Document create(String html) {
-            W3CDom helper = new W3CDom();
-            Document doc = helper.fromJsoup(Jsoup.parse(html));
-
-            // strip off namespaces
-            html = helper.asString(doc);
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setValidating(false);
-
-            try {
-                return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(html.getBytes("UTF-8")));
-            }
-            catch (UnsupportedEncodingException e) {
-                throw new RuntimeException("UTF-8 not supported on this system");
-            }
-            catch (SAXException e) {
-                // ignore parse error; return doc (may cause problems)
-                return doc;
-            }
-            catch (IOException e) {
-                throw new RuntimeException("Could not read from memory");
-            }
-            catch (ParserConfigurationException e) {
-                throw new RuntimeException("No usable XML parser available on this system");
-            }
+        protected XPath initialValue() {
+            return XPathFactory.newInstance().newXPath();
         }
     };
 
-    /* Use an MRU cache for HTML -> DOM mappings. If executing several XPaths on same HTML, this increases performance
-     * significantly. */
-    private static final MostRecentUseCache<String, Document> docCache = new MostRecentUseCache<String, Document>(docFactory, 50);
+    private static final ThreadLocal<Map<String, XPathExpression>> compiledXPaths = new ThreadLocal<Map<String, XPathExpression>>() {
+        @Override
+        protected Map<String, XPathExpression> initialValue() {
+            return new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > MAX_COMPILED_XPATHS;
+                }
+            };
+        }
+    };
+
+    private static final AtomicLong xpathCacheHits = new AtomicLong();
+
+    private static final AtomicLong xpathCacheMisses = new AtomicLong();
+
+    /** @return the number of XPath evaluations which used an already compiled expression. */
+    public static long getXPathCacheHitCount() {
+        return xpathCacheHits.get();
+    }
+
+    /** @return the number of XPath evaluations which required compiling the expression. */
+    public static long getXPathCacheMissCount() {
+        return xpathCacheMisses.get();
+    }
+
+    private static XPathExpression compile(String xpath) throws XPathExpressionException {
+        Map<String, XPathExpression> expressions = compiledXPaths.get();
+        XPathExpression expression = expressions.get(xpath);
+        if (expression != null) {
+            xpathCacheHits.incrementAndGet();
+            return expression;
+        }
+        xpathCacheMisses.incrementAndGet();
+        expression = xpathObjects.get().compile(xpath);
+        expressions.put(xpath, expression);
+        return expression;
+    }
+
+    /** Calculates a 64 bit FNV-1a hash over the characters of the given string, without creating a byte array copy of it.
+     * @param html the string to hash.
+     * @return the hash, in hexadecimal notation, followed by the length of the string. */
+    static String contentHash(String html) {
+        if (html == null) {
+            return "";
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < html.length(); i++) {
+            hash ^= html.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash) + "-" + html.length();
+    }
 
     public static NodeList evalXPathInHTML(XPathLocator locator, String html) {
         return evalXPathInHTML(locator.toString(), html);
     }
 
     public static NodeList evalXPathInHTML(String xpath, String html) {
+        return evalXPathInHTML(xpath, html, null);
+    }
+
+    /** Evaluates an XPath on an HTML document, caching the parsed document in a partition of the cache.
+     * @param xpath the XPath to evaluate.
+     * @param html the HTML source.
+     * @param partition the cache partition, e.g. one per session, or <code>null</code> for the shared partition.
+     * @return the matching nodes. */
+    public static NodeList evalXPathInHTML(String xpath, String html, String partition) {
+        StreamingXPath streamingXPath = getStreamingXPath(xpath, html);
+        if (streamingXPath != null && !streamingXPath.isCount()) {
+            return streamingXPath.evaluate(html);
+        }
         try {
-            Document document = docCache.get(html);
-            XPathExpression expression = XPathFactory.newInstance().newXPath().compile(xpath);
+            Document document = getDocument(html, partition);
+            XPathExpression expression = compile(xpath);
             return (NodeList) expression.evaluate(document, XPathConstants.NODESET);
         }
         catch (XPathExpressionException e) {
@@ -93,9 +224,22 @@ public final class DocCache {
     }
 
     public static String evalXPathInHTMLAsString(String xpath, String html) {
+        return evalXPathInHTMLAsString(xpath, html, null);
+    }
+
+    /** Evaluates an XPath on an HTML document to a string, caching the parsed document in a partition of the cache.
+     * @param xpath the XPath to evaluate.
+     * @param html the HTML source.
+     * @param partition the cache partition, e.g. one per session, or <code>null</code> for the shared partition.
+     * @return the string value of the XPath result. */
+    public static String evalXPathInHTMLAsString(String xpath, String html, String partition) {
+        StreamingXPath streamingXPath = getStreamingXPath(xpath, html);
+        if (streamingXPath != null) {
+            return streamingXPath.evaluateAsString(html);
+        }
         try {
-            Document document = docCache.get(html);
-            XPathExpression expression = XPathFactory.newInstance().newXPath().compile(xpath);
+            Document document = getDocument(html, partition);
+            XPathExpression expression = compile(xpath);
             return (String) expression.evaluate(document, XPathConstants.STRING);
         }
         catch (XPathExpressionException e) {
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.dom.Document;
+
+/** Concurrent cache for parsed documents, bounded by the estimated heap size of the documents. The keys are distributed over
+ * a fixed number of stripes, each of which is an LRU map guarded by its own lock, so parallel threads rarely contend. When the
+ * size bound is exceeded, the least recently used entries of the stripes are evicted round robin, which approximates a global
+ * LRU order. Optionally, documents are only softly referenced, so the garbage collector may reclaim them under memory
+ * pressure. */
+final class DocumentCache {
+
+    private static final int STRIPE_COUNT = 16;
+
+    private final Stripe[] stripes;
+
+    private final long maxBytes;
+
+    private final boolean softValues;
+
+    private final AtomicLong currentBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    DocumentCache(long maxBytes, boolean softValues) {
+        this.maxBytes = maxBytes;
+        this.softValues = softValues;
+        this.stripes = new Stripe[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    boolean isSoftValues() {
+        return softValues;
+    }
+
+    /** Returns the cached document for a key. Since keys may be derived from a hash of the content, the content of the entry
+     * is compared with the given content, and a different content is treated as a miss.
+     * @param key the key.
+     * @param content the content from which the document has been built.
+     * @return the document, or <code>null</code> if it is not cached, has been built from a different content, or has been
+     *         reclaimed by the garbage collector. */
+    Document get(String key, String content) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null && !entry.content.equals(content)) {
+                entry = null;
+            }
+            if (entry != null) {
+                Document document = entry.get();
+                if (document != null) {
+                    hits.incrementAndGet();
+                    return document;
+                }
+                // soft reference has been cleared
+                stripe.entries.remove(key);
+                currentBytes.addAndGet(-entry.bytes);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Adds a document to the cache, evicting least recently used documents if the size bound is exceeded.
+     * @param key the key.
+     * @param content the content from which the document has been built.
+     * @param document the document.
+     * @param estimatedBytes the estimated heap size of the document, including the content. */
+    void put(String key, String content, Document document, long estimatedBytes) {
+        if (estimatedBytes > maxBytes) {
+            return;
+        }
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry previous = stripe.entries.put(key, new Entry(content, document, estimatedBytes, softValues));
+            if (previous != null) {
+                currentBytes.addAndGet(-previous.bytes);
+            }
+        }
+        currentBytes.addAndGet(estimatedBytes);
+        evictIfNecessary(indexOf(key));
+    }
+
+    /** Removes all documents whose key starts with the given prefix.
+     * @param keyPrefix the prefix. */
+    void removeAll(String keyPrefix) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<String, Entry>> iterator = stripe.entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Entry> entry = iterator.next();
+                    if (entry.getKey().startsWith(keyPrefix)) {
+                        iterator.remove();
+                        currentBytes.addAndGet(-entry.getValue().bytes);
+                    }
+                }
+            }
+        }
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    long getEvictionCount() {
+        return evictions.get();
+    }
+
+    long getEstimatedBytes() {
+        return currentBytes.get();
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private void evictIfNecessary(int startStripe) {
+        int emptyStripes = 0;
+        int index = startStripe;
+        while (currentBytes.get() > maxBytes && emptyStripes < STRIPE_COUNT) {
+            Stripe stripe = stripes[index];
+            synchronized (stripe) {
+                Iterator<Entry> iterator = stripe.entries.values().iterator();
+                if (iterator.hasNext()) {
+                    Entry eldest = iterator.next();
+                    iterator.remove();
+                    currentBytes.addAndGet(-eldest.bytes);
+                    evictions.incrementAndGet();
+                    emptyStripes = 0;
+                }
+                else {
+                    emptyStripes++;
+                }
+            }
+            index = (index + 1) % STRIPE_COUNT;
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        return stripes[indexOf(key)];
+    }
+
+    /** @return the index of the stripe of a key; package-visible for tests. */
+    static int indexOf(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (STRIPE_COUNT - 1);
+    }
+
+    private static final class Stripe {
+
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    }
+
+    private static final class Entry {
+
+        private final String content;
+
+        private final Document document;
+
+        private final SoftReference<Document> softDocument;
+
+        private final long bytes;
+
+        private Entry(String content, Document document, long bytes, boolean soft) {
+            this.content = content;
+            this.document = (soft ? null : document);
+            this.softDocument = (soft ? new SoftReference<Document>(document) : null);
+            this.bytes = bytes;
+        }
+
+        private Document get() {
+            return (softDocument != null ? softDocument.get() : document);
+        }
+
+    }
+
+}
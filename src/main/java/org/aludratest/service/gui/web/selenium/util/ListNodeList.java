@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import java.util.List;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** {@link NodeList} backed by a list of detached nodes. */
+final class ListNodeList implements NodeList {
+
+    private final List<Node> nodes;
+
+    ListNodeList(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public Node item(int index) {
+        return (index >= 0 && index < nodes.size() ? nodes.get(index) : null);
+    }
+
+    @Override
+    public int getLength() {
+        return nodes.size();
+    }
+
+}
@@ -0,0 +1,725 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jsoup.parser.Parser;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Evaluates a commonly used subset of XPath in a single pass over the HTML source, without building a DOM of the whole page.
+ * Memory usage therefore only depends on the size of the result, not on the size of the page. Supported are absolute location
+ * paths of child (<code>/</code>) and descendant (<code>//</code>) steps with element names or <code>*</code>, attribute
+ * predicates of the forms <code>[@a]</code>, <code>[@a='v']</code> and <code>[contains(@a, 'v')]</code>, an optional final
+ * <code>/text()</code> or <code>/@a</code> step, and <code>count(...)</code> around such a path. <br>
+ * The source is expected to be serialized by a browser, i.e. all non-void elements are closed explicitly. Implicit element
+ * closing and other error recovery of the HTML parser are not performed. */
+public final class StreamingXPath {
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList("area", "base", "br", "col", "command",
+            "embed", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<String>(Arrays.asList("script", "style", "xmp", "iframe",
+            "noembed", "noframes", "noscript"));
+
+    private static final Set<String> RCDATA_ELEMENTS = new HashSet<String>(Arrays.asList("textarea", "title"));
+
+    private static final int MAX_STEPS = 63;
+
+    private enum ResultType {
+        ELEMENTS, TEXT, ATTRIBUTE
+    }
+
+    private final Step[] steps;
+
+    private final boolean count;
+
+    private final ResultType resultType;
+
+    private final String resultAttribute;
+
+    private StreamingXPath(Step[] steps, boolean count, ResultType resultType, String resultAttribute) {
+        this.steps = steps;
+        this.count = count;
+        this.resultType = resultType;
+        this.resultAttribute = resultAttribute;
+    }
+
+    /** Compiles an XPath, if it is within the supported subset.
+     * @param xpath the XPath.
+     * @return the compiled XPath, or <code>null</code> if it is not supported. */
+    public static StreamingXPath compile(String xpath) {
+        return new ExpressionParser(xpath.trim()).parse();
+    }
+
+    /** @return <code>true</code> if the XPath is a <code>count()</code> expression, which evaluates to a number. */
+    public boolean isCount() {
+        return count;
+    }
+
+    /** Evaluates the XPath to a string, like <code>XPathConstants.STRING</code> does.
+     * @param html the HTML source.
+     * @return the string value of the first matching node, or the number of matching nodes for <code>count()</code>. */
+    public String evaluateAsString(String html) {
+        Evaluation evaluation = new Evaluation(count ? Mode.COUNT : Mode.STRING, null);
+        evaluation.scan(html);
+        return (count ? String.valueOf(evaluation.count) : evaluation.stringResult);
+    }
+
+    /** Evaluates the XPath to a node list. Must not be called for <code>count()</code> expressions.
+     * @param html the HTML source.
+     * @return the matching nodes, as detached nodes of a new namespace-free W3C document. */
+    public NodeList evaluate(String html) {
+        if (count) {
+            throw new IllegalStateException("count() does not evaluate to a node set");
+        }
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        }
+        catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        Element root = document.createElement("xpath-result");
+        document.appendChild(root);
+        Evaluation evaluation = new Evaluation(Mode.NODES, root);
+        evaluation.scan(html);
+        return new ListNodeList(evaluation.nodes);
+    }
+
+    private enum Mode {
+        COUNT, STRING, NODES
+    }
+
+    /** The state of one pass over an HTML source. */
+    private final class Evaluation {
+
+        private final Mode mode;
+
+        private final Element resultRoot;
+
+        private final List<Frame> stack = new ArrayList<Frame>();
+
+        private final StringBuilder pendingText = new StringBuilder();
+
+        private final List<Capture> captures = new ArrayList<Capture>();
+
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        private int count;
+
+        private String stringResult = "";
+
+        private StringBuilder stringValue;
+
+        private int stringValueDepth;
+
+        private boolean done;
+
+        Evaluation(Mode mode, Element resultRoot) {
+            this.mode = mode;
+            this.resultRoot = resultRoot;
+        }
+
+        void scan(String html) {
+            int length = html.length();
+            int pos = 0;
+            while (pos < length && !done) {
+                if (html.charAt(pos) == '<' && pos + 1 < length) {
+                    char next = html.charAt(pos + 1);
+                    if (next == '!') {
+                        flushText();
+                        if (html.startsWith("<!--", pos)) {
+                            int end = html.indexOf("-->", pos + 4);
+                            end = (end < 0 ? length : end);
+                            comment(html.substring(pos + 4, end));
+                            pos = end + 3;
+                        }
+                        else {
+                            pos = skipPast(html, '>', pos);
+                        }
+                        continue;
+                    }
+                    if (next == '?') {
+                        flushText();
+                        pos = skipPast(html, '>', pos);
+                        continue;
+                    }
+                    if (next == '/' && pos + 2 < length && Character.isLetter(html.charAt(pos + 2))) {
+                        flushText();
+                        int nameEnd = nameEnd(html, pos + 2);
+                        endTag(html.substring(pos + 2, nameEnd).toLowerCase());
+                        pos = skipPast(html, '>', nameEnd);
+                        continue;
+                    }
+                    if (Character.isLetter(next)) {
+                        flushText();
+                        pos = startTag(html, pos);
+                        continue;
+                    }
+                }
+                int next = html.indexOf('<', pos + 1);
+                next = (next < 0 ? length : next);
+                pendingText.append(html, pos, next);
+                pos = next;
+            }
+            flushText();
+            while (!stack.isEmpty() && !done) {
+                endElement();
+            }
+            if (stringValue != null) {
+                stringResult = stringValue.toString();
+            }
+        }
+
+        private int startTag(String html, int pos) {
+            int length = html.length();
+            int i = nameEnd(html, pos + 1);
+            String name = html.substring(pos + 1, i).toLowerCase();
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            boolean selfClosing = false;
+            while (i < length) {
+                char c = html.charAt(i);
+                if (c == '>') {
+                    i++;
+                    break;
+                }
+                if (c == '/' && i + 1 < length && html.charAt(i + 1) == '>') {
+                    selfClosing = true;
+                    i += 2;
+                    break;
+                }
+                if (Character.isWhitespace(c) || c == '/') {
+                    i++;
+                    continue;
+                }
+                int attrStart = i;
+                while (i < length && !Character.isWhitespace(html.charAt(i)) && "=>/".indexOf(html.charAt(i)) < 0) {
+                    i++;
+                }
+                if (i == attrStart) {
+                    // stray '=', as the HTML parser does, treat it as part of a name
+                    i++;
+                }
+                String attrName = html.substring(attrStart, i).toLowerCase();
+                String value = "";
+                int j = skipWhitespace(html, i);
+                if (j < length && html.charAt(j) == '=') {
+                    j = skipWhitespace(html, j + 1);
+                    if (j < length && (html.charAt(j) == '"' || html.charAt(j) == '\'')) {
+                        int end = html.indexOf(html.charAt(j), j + 1);
+                        end = (end < 0 ? length : end);
+                        value = Parser.unescapeEntities(html.substring(j + 1, end), true);
+                        i = Math.min(length, end + 1);
+                    }
+                    else {
+                        int end = j;
+                        while (end < length && !Character.isWhitespace(html.charAt(end)) && html.charAt(end) != '>') {
+                            end++;
+                        }
+                        value = Parser.unescapeEntities(html.substring(j, end), true);
+                        i = end;
+                    }
+                }
+                if (!attributes.containsKey(attrName)) {
+                    attributes.put(attrName, value);
+                }
+            }
+
+            startElement(name, attributes);
+            if (selfClosing || VOID_ELEMENTS.contains(name)) {
+                endElement();
+                return i;
+            }
+            boolean rawText = RAW_TEXT_ELEMENTS.contains(name);
+            if (rawText || RCDATA_ELEMENTS.contains(name)) {
+                int end = findEndTag(html, name, i);
+                String content = html.substring(i, end);
+                if (!content.isEmpty()) {
+                    text(rawText ? content : Parser.unescapeEntities(content, false));
+                }
+                endElement();
+                return (end < length ? skipPast(html, '>', end) : length);
+            }
+            return i;
+        }
+
+        private void flushText() {
+            if (pendingText.length() > 0) {
+                String value = Parser.unescapeEntities(pendingText.toString(), false);
+                pendingText.setLength(0);
+                text(value);
+            }
+        }
+
+        private void startElement(String name, Map<String, String> attributes) {
+            long parentStates = (stack.isEmpty() ? 1L : stack.get(stack.size() - 1).states);
+            long states = 0;
+            boolean matched = false;
+            for (int i = 0; i < steps.length; i++) {
+                if ((parentStates & (1L << i)) == 0) {
+                    continue;
+                }
+                Step step = steps[i];
+                if (step.descendant) {
+                    states |= (1L << i);
+                }
+                if (step.matches(name, attributes)) {
+                    if (i + 1 == steps.length) {
+                        matched = true;
+                    }
+                    else {
+                        states |= (1L << (i + 1));
+                    }
+                }
+            }
+            stack.add(new Frame(name, states, matched));
+
+            if (mode == Mode.NODES && resultType == ResultType.ELEMENTS) {
+                for (Capture capture : captures) {
+                    Element element = createElement(name, attributes);
+                    capture.cursor.appendChild(element);
+                    capture.cursor = element;
+                }
+            }
+            if (!matched) {
+                return;
+            }
+            if (resultType == ResultType.ELEMENTS) {
+                if (mode == Mode.COUNT) {
+                    count++;
+                }
+                else if (mode == Mode.STRING) {
+                    if (stringValue == null) {
+                        stringValue = new StringBuilder();
+                        stringValueDepth = stack.size();
+                    }
+                }
+                else {
+                    Element element = createElement(name, attributes);
+                    resultRoot.appendChild(element);
+                    nodes.add(element);
+                    captures.add(new Capture(element, stack.size()));
+                }
+            }
+            else if (resultType == ResultType.ATTRIBUTE && attributes.containsKey(resultAttribute)) {
+                String value = attributes.get(resultAttribute);
+                if (mode == Mode.COUNT) {
+                    count++;
+                }
+                else if (mode == Mode.STRING) {
+                    stringResult = value;
+                    done = true;
+                }
+                else {
+                    Attr attr = resultRoot.getOwnerDocument().createAttribute(resultAttribute);
+                    attr.setValue(value);
+                    nodes.add(attr);
+                }
+            }
+        }
+
+        private void endTag(String name) {
+            for (int i = stack.size() - 1; i >= 0; i--) {
+                if (stack.get(i).name.equals(name)) {
+                    while (stack.size() > i && !done) {
+                        endElement();
+                    }
+                    return;
+                }
+            }
+            // end tag without start tag; ignore
+        }
+
+        private void endElement() {
+            int depth = stack.size();
+            Iterator<Capture> iterator = captures.iterator();
+            while (iterator.hasNext()) {
+                Capture capture = iterator.next();
+                if (capture.depth == depth) {
+                    iterator.remove();
+                }
+                else {
+                    capture.cursor = capture.cursor.getParentNode();
+                }
+            }
+            stack.remove(depth - 1);
+            if (stringValue != null && depth == stringValueDepth) {
+                stringResult = stringValue.toString();
+                done = true;
+            }
+        }
+
+        private void text(String value) {
+            if (stack.isEmpty()) {
+                return;
+            }
+            if (resultType == ResultType.TEXT && stack.get(stack.size() - 1).matched) {
+                if (mode == Mode.COUNT) {
+                    count++;
+                }
+                else if (mode == Mode.STRING) {
+                    stringResult = value;
+                    done = true;
+                }
+                else {
+                    nodes.add(resultRoot.appendChild(resultRoot.getOwnerDocument().createTextNode(value)));
+                }
+            }
+            if (stringValue != null) {
+                stringValue.append(value);
+            }
+            for (Capture capture : captures) {
+                capture.cursor.appendChild(resultRoot.getOwnerDocument().createTextNode(value));
+            }
+        }
+
+        private void comment(String value) {
+            for (Capture capture : captures) {
+                capture.cursor.appendChild(resultRoot.getOwnerDocument().createComment(value));
+            }
+        }
+
+        private Element createElement(String name, Map<String, String> attributes) {
+            Element element = resultRoot.getOwnerDocument().createElement(name);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                // same greedy handling of invalid attribute names as in W3CDom
+                try {
+                    element.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+                catch (DOMException e) {
+                    if (e.code != DOMException.INVALID_CHARACTER_ERR) {
+                        throw e;
+                    }
+                }
+            }
+            return element;
+        }
+
+    }
+
+    private static int nameEnd(String html, int pos) {
+        int i = pos;
+        while (i < html.length() && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>' && html.charAt(i) != '/') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(String html, int pos) {
+        int i = pos;
+        while (i < html.length() && Character.isWhitespace(html.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipPast(String html, char c, int pos) {
+        int index = html.indexOf(c, pos);
+        return (index < 0 ? html.length() : index + 1);
+    }
+
+    private static int findEndTag(String html, String name, int pos) {
+        int index = pos;
+        while ((index = html.indexOf("</", index)) >= 0) {
+            if (html.regionMatches(true, index + 2, name, 0, name.length())) {
+                return index;
+            }
+            index += 2;
+        }
+        return html.length();
+    }
+
+    private static final class Frame {
+
+        private final String name;
+
+        private final long states;
+
+        private final boolean matched;
+
+        private Frame(String name, long states, boolean matched) {
+            this.name = name;
+            this.states = states;
+            this.matched = matched;
+        }
+
+    }
+
+    private static final class Capture {
+
+        private Node cursor;
+
+        private final int depth;
+
+        private Capture(Node cursor, int depth) {
+            this.cursor = cursor;
+            this.depth = depth;
+        }
+
+    }
+
+    private static final class Step {
+
+        private final boolean descendant;
+
+        private final String name;
+
+        private final List<Predicate> predicates = new ArrayList<Predicate>();
+
+        private Step(boolean descendant, String name) {
+            this.descendant = descendant;
+            this.name = name;
+        }
+
+        private boolean matches(String elementName, Map<String, String> attributes) {
+            if (name != null && !name.equals(elementName)) {
+                return false;
+            }
+            for (Predicate predicate : predicates) {
+                if (!predicate.matches(attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static final class Predicate {
+
+        private enum Operator {
+            EXISTS, EQUALS, CONTAINS
+        }
+
+        private final Operator operator;
+
+        private final String attribute;
+
+        private final String value;
+
+        private Predicate(Operator operator, String attribute, String value) {
+            this.operator = operator;
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        private boolean matches(Map<String, String> attributes) {
+            String actual = attributes.get(attribute);
+            if (actual == null) {
+                return false;
+            }
+            switch (operator) {
+                case EQUALS:
+                    return actual.equals(value);
+                case CONTAINS:
+                    return actual.contains(value);
+                default:
+                    return true;
+            }
+        }
+
+    }
+
+    /** Recursive descent parser for the supported XPath subset. */
+    private static final class ExpressionParser {
+
+        private final String xpath;
+
+        private int pos;
+
+        private ExpressionParser(String xpath) {
+            this.xpath = xpath;
+        }
+
+        private StreamingXPath parse() {
+            boolean count = false;
+            if (xpath.startsWith("count(") && xpath.endsWith(")")) {
+                count = true;
+                pos = skipWhitespace(xpath, "count(".length());
+            }
+            int end = (count ? xpath.length() - 1 : xpath.length());
+            List<Step> steps = new ArrayList<Step>();
+            ResultType resultType = ResultType.ELEMENTS;
+            String resultAttribute = null;
+            while (skipWhitespaceBefore(end) < end) {
+                boolean descendant;
+                if (xpath.startsWith("//", pos)) {
+                    descendant = true;
+                    pos += 2;
+                }
+                else if (xpath.startsWith("/", pos)) {
+                    descendant = false;
+                    pos++;
+                }
+                else {
+                    return null;
+                }
+                if (xpath.startsWith("text()", pos) || xpath.startsWith("@", pos)) {
+                    if (descendant) {
+                        return null;
+                    }
+                    if (xpath.startsWith("text()", pos)) {
+                        resultType = ResultType.TEXT;
+                        pos += "text()".length();
+                    }
+                    else {
+                        pos++;
+                        resultAttribute = name();
+                        if (resultAttribute == null) {
+                            return null;
+                        }
+                        resultType = ResultType.ATTRIBUTE;
+                    }
+                    if (skipWhitespaceBefore(end) != end) {
+                        return null;
+                    }
+                    break;
+                }
+                Step step;
+                if (xpath.startsWith("*", pos)) {
+                    pos++;
+                    step = new Step(descendant, null);
+                }
+                else {
+                    String name = name();
+                    if (name == null) {
+                        return null;
+                    }
+                    step = new Step(descendant, name);
+                }
+                while (pos < end && xpath.charAt(pos) == '[') {
+                    pos++;
+                    Predicate predicate = predicate();
+                    if (predicate == null || !consume(']')) {
+                        return null;
+                    }
+                    step.predicates.add(predicate);
+                }
+                steps.add(step);
+            }
+            if (steps.isEmpty() || steps.size() > MAX_STEPS) {
+                return null;
+            }
+            return new StreamingXPath(steps.toArray(new Step[steps.size()]), count, resultType, resultAttribute);
+        }
+
+        private Predicate predicate() {
+            pos = skipWhitespace(xpath, pos);
+            if (xpath.startsWith("contains(", pos)) {
+                pos += "contains(".length();
+                String attribute = attributeReference();
+                if (attribute == null || !consume(',')) {
+                    return null;
+                }
+                String value = literal();
+                if (value == null || !consume(')')) {
+                    return null;
+                }
+                return new Predicate(Predicate.Operator.CONTAINS, attribute, value);
+            }
+            String attribute = attributeReference();
+            if (attribute == null) {
+                return null;
+            }
+            pos = skipWhitespace(xpath, pos);
+            if (pos < xpath.length() && xpath.charAt(pos) == '=') {
+                pos++;
+                String value = literal();
+                return (value == null ? null : new Predicate(Predicate.Operator.EQUALS, attribute, value));
+            }
+            return new Predicate(Predicate.Operator.EXISTS, attribute, null);
+        }
+
+        private String attributeReference() {
+            pos = skipWhitespace(xpath, pos);
+            if (!xpath.startsWith("@", pos)) {
+                return null;
+            }
+            pos++;
+            return name();
+        }
+
+        private String literal() {
+            pos = skipWhitespace(xpath, pos);
+            if (pos >= xpath.length() || (xpath.charAt(pos) != '\'' && xpath.charAt(pos) != '"')) {
+                return null;
+            }
+            int end = xpath.indexOf(xpath.charAt(pos), pos + 1);
+            if (end < 0) {
+                return null;
+            }
+            String value = xpath.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+
+        /** Parses an element or attribute name. Prefixed names are not supported, as the HTML is evaluated without namespaces. */
+        private String name() {
+            int start = pos;
+            while (pos < xpath.length()) {
+                char c = xpath.charAt(pos);
+                if (Character.isLetterOrDigit(c) || c == '_' || (pos > start && (c == '-' || c == '.'))) {
+                    pos++;
+                }
+                else {
+                    break;
+                }
+            }
+            if (pos == start || !Character.isLetter(xpath.charAt(start)) && xpath.charAt(start) != '_') {
+                return null;
+            }
+            if (pos < xpath.length() && (xpath.charAt(pos) == ':' || xpath.charAt(pos) == '(')) {
+                // prefixed name or function call
+                return null;
+            }
+            return xpath.substring(start, pos);
+        }
+
+        private boolean consume(char c) {
+            pos = skipWhitespace(xpath, pos);
+            if (pos < xpath.length() && xpath.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private int skipWhitespaceBefore(int end) {
+            while (pos < end && Character.isWhitespace(xpath.charAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+    }
+
+}
@@ -16,7 +16,14 @@
 package org.aludratest.service.gui.web.selenium.util;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -35,8 +42,10 @@ import org.jsoup.select.NodeTraversor;
 import org.jsoup.select.NodeVisitor;
 import org.w3c.dom.Comment;
 import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
 // copied from JSoup to be able to ignore invalid attributes.
@@ -50,6 +59,37 @@ import org.w3c.dom.Text;
 public class W3CDom {
     protected DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 
+    /** The default minimum number of nodes of a document to convert its subtrees in parallel. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 20000;
+
+    /** The minimum number of nodes converted by one parallel task. */
+    private static final int MIN_TASK_SIZE = 1000;
+
+    private final boolean namespaceAware;
+
+    // adopting the subtrees costs an additional walk, so parallel conversion only pays off with several processors
+    private int parallelThreshold = (ForkJoinPool.getCommonPoolParallelism() > 1 ? DEFAULT_PARALLEL_THRESHOLD : 0);
+
+    /** Creates a converter which creates namespace-aware documents. */
+    public W3CDom() {
+        this(true);
+    }
+
+    /** Creates a converter.
+     * @param namespaceAware if <code>false</code>, namespace declarations are ignored and all elements and attributes are
+     *            created without namespace, just as a namespace-unaware parser would do. This allows XPath expressions without
+     *            prefixes to match XHTML documents. */
+    public W3CDom(boolean namespaceAware) {
+        this.namespaceAware = namespaceAware;
+    }
+
+    /** Sets the minimum number of nodes of a document to convert its subtrees in parallel. The default is
+     * {@link #DEFAULT_PARALLEL_THRESHOLD} if the common fork-join pool uses several threads, and 0 otherwise.
+     * @param parallelThreshold the minimum number of nodes, or 0 to always convert sequentially. */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
     /** Convert a jsoup Document to a W3C Document.
      * @param in jsoup doc
      * @return w3c doc */
@@ -57,8 +97,7 @@ public class W3CDom {
         Validate.notNull(in);
         DocumentBuilder builder;
         try {
-            // set the factory to be namespace-aware
-            factory.setNamespaceAware(true);
+            factory.setNamespaceAware(namespaceAware);
             builder = factory.newDocumentBuilder();
             Document out = builder.newDocument();
             convert(in, out);
@@ -79,8 +118,206 @@ public class W3CDom {
             out.setDocumentURI(in.location());
 
         org.jsoup.nodes.Element rootEl = in.child(0); // skip the #root node
-        NodeTraversor traversor = new NodeTraversor(new W3CBuilder(out));
-        traversor.traverse(rootEl);
+
+        if (parallelThreshold > 0 && countNodes(rootEl, parallelThreshold) >= parallelThreshold) {
+            new ParallelConversion(out).convert(rootEl);
+        }
+        else {
+            NodeTraversor traversor = new NodeTraversor(new W3CBuilder(out, namespaceAware));
+            traversor.traverse(rootEl);
+        }
+    }
+
+    /** Counts the nodes of a subtree, stopping at a limit. */
+    private static int countNodes(org.jsoup.nodes.Node root, int limit) {
+        int count = 0;
+        List<org.jsoup.nodes.Node> pending = new ArrayList<org.jsoup.nodes.Node>();
+        pending.add(root);
+        while (!pending.isEmpty() && count < limit) {
+            org.jsoup.nodes.Node node = pending.remove(pending.size() - 1);
+            count++;
+            pending.addAll(node.childNodes());
+        }
+        return count;
+    }
+
+    /** Converts a jsoup node and its descendants, and appends the result to an element of a W3C Document.
+     * @param in jsoup node
+     * @param parent the W3C element to append the converted node to */
+    public void appendTo(org.jsoup.nodes.Node in, Element parent) {
+        W3CBuilder builder = new W3CBuilder(parent.getOwnerDocument(), namespaceAware, inScopeNamespaces(in.parent()));
+        builder.dest = parent;
+        new NodeTraversor(builder).traverse(in);
+    }
+
+    /** Returns the namespace declarations in scope of a jsoup node, i.e. those of the node and its ancestors. If a prefix is
+     * declared several times, the innermost declaration applies.
+     * @return the declarations, prefix =&gt; urn; empty if this converter is not namespace aware. */
+    private Map<String, String> inScopeNamespaces(org.jsoup.nodes.Node node) {
+        Map<String, String> namespaces = new HashMap<String, String>();
+        if (!namespaceAware) {
+            return namespaces;
+        }
+        List<org.jsoup.nodes.Element> ancestors = new ArrayList<org.jsoup.nodes.Element>();
+        for (org.jsoup.nodes.Node current = node; current instanceof org.jsoup.nodes.Element
+                && !(current instanceof org.jsoup.nodes.Document); current = current.parent()) {
+            ancestors.add((org.jsoup.nodes.Element) current);
+        }
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            W3CBuilder.collectNamespaces(ancestors.get(i), namespaces);
+        }
+        return namespaces;
+    }
+
+    /** Converts large documents by distributing subtrees over the fork-join pool. Each task builds its subtrees below a
+     * wrapper element of its own, detached document, as W3C documents are not thread-safe. The skeleton of large elements is
+     * built on the calling thread, with placeholders for the subtrees of the tasks, which are finally adopted into the output
+     * document in document order. */
+    private final class ParallelConversion {
+
+        private final Document out;
+
+        private int taskSize;
+
+        private final Map<org.jsoup.nodes.Node, Integer> sizes = new IdentityHashMap<org.jsoup.nodes.Node, Integer>();
+
+        private final List<Node> placeholders = new ArrayList<Node>();
+
+        private final List<ForkJoinTask<Element>> tasks = new ArrayList<ForkJoinTask<Element>>();
+
+        private final W3CBuilder builder;
+
+        ParallelConversion(Document out) {
+            this.out = out;
+            this.builder = new W3CBuilder(out, namespaceAware);
+        }
+
+        void convert(org.jsoup.nodes.Element rootEl) {
+            calculateSizes(rootEl);
+            int nodeCount = sizes.get(rootEl).intValue();
+            taskSize = Math.max(MIN_TASK_SIZE, nodeCount / (ForkJoinPool.getCommonPoolParallelism() * 4 + 1));
+            Element root = builder.createElement(rootEl, inScopeNamespaces(rootEl));
+            out.appendChild(root);
+            split(rootEl, root);
+
+            for (int i = 0; i < tasks.size(); i++) {
+                Node placeholder = placeholders.get(i);
+                Node parent = placeholder.getParentNode();
+                Element fragment = tasks.get(i).join();
+                Node child;
+                while ((child = fragment.getFirstChild()) != null) {
+                    Node adopted = out.adoptNode(child);
+                    if (adopted == null) {
+                        adopted = out.importNode(child, true);
+                        fragment.removeChild(child);
+                    }
+                    parent.insertBefore(adopted, placeholder);
+                }
+                parent.removeChild(placeholder);
+            }
+        }
+
+        private void calculateSizes(org.jsoup.nodes.Element rootEl) {
+            new NodeTraversor(new NodeVisitor() {
+                @Override
+                public void head(org.jsoup.nodes.Node node, int depth) {
+                }
+
+                @Override
+                public void tail(org.jsoup.nodes.Node node, int depth) {
+                    int size = 1;
+                    for (org.jsoup.nodes.Node child : node.childNodes()) {
+                        Integer childSize = sizes.get(child);
+                        size += (childSize == null ? 1 : childSize.intValue());
+                    }
+                    if (node instanceof org.jsoup.nodes.Element) {
+                        sizes.put(node, Integer.valueOf(size));
+                    }
+                }
+            }).traverse(rootEl);
+        }
+
+        private void split(org.jsoup.nodes.Element source, Element dest) {
+            List<org.jsoup.nodes.Node> batch = new ArrayList<org.jsoup.nodes.Node>();
+            int batchSize = 0;
+            for (org.jsoup.nodes.Node child : source.childNodes()) {
+                Integer size = sizes.get(child);
+                if (size != null && size.intValue() > taskSize) {
+                    submit(batch, batchSize, dest);
+                    batch = new ArrayList<org.jsoup.nodes.Node>();
+                    batchSize = 0;
+                    Element el = builder.createElement((org.jsoup.nodes.Element) child, inScopeNamespaces(child));
+                    dest.appendChild(el);
+                    split((org.jsoup.nodes.Element) child, el);
+                }
+                else {
+                    batch.add(child);
+                    batchSize += (size == null ? 1 : size.intValue());
+                    if (batchSize >= taskSize) {
+                        submit(batch, batchSize, dest);
+                        batch = new ArrayList<org.jsoup.nodes.Node>();
+                        batchSize = 0;
+                    }
+                }
+            }
+            submit(batch, batchSize, dest);
+        }
+
+        private void submit(List<org.jsoup.nodes.Node> batch, int batchSize, Element dest) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // the nodes of a batch are siblings, so the declarations in scope of their parent apply to all of them
+            Map<String, String> namespaces = inScopeNamespaces(batch.get(0).parent());
+            if (batchSize < MIN_TASK_SIZE / 10) {
+                // not worth a task
+                W3CBuilder localBuilder = new W3CBuilder(out, namespaceAware, namespaces);
+                localBuilder.dest = dest;
+                NodeTraversor traversor = new NodeTraversor(localBuilder);
+                for (org.jsoup.nodes.Node node : batch) {
+                    traversor.traverse(node);
+                }
+                return;
+            }
+            Node placeholder = out.createComment("");
+            dest.appendChild(placeholder);
+            placeholders.add(placeholder);
+            tasks.add(ForkJoinPool.commonPool().submit(new SubtreeTask(out.getImplementation(), batch, namespaces)));
+        }
+
+    }
+
+    /** Converts a list of sibling subtrees into a wrapper element of a new document. */
+    private final class SubtreeTask extends RecursiveTask<Element> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient DOMImplementation implementation;
+
+        private final transient List<org.jsoup.nodes.Node> nodes;
+
+        private final transient Map<String, String> namespaces;
+
+        SubtreeTask(DOMImplementation implementation, List<org.jsoup.nodes.Node> nodes, Map<String, String> namespaces) {
+            this.implementation = implementation;
+            this.nodes = nodes;
+            this.namespaces = namespaces;
+        }
+
+        @Override
+        protected Element compute() {
+            Document doc = implementation.createDocument(null, null, null);
+            Element fragment = doc.createElement("fragment");
+            doc.appendChild(fragment);
+            W3CBuilder builder = new W3CBuilder(doc, namespaceAware, namespaces);
+            builder.dest = fragment;
+            NodeTraversor traversor = new NodeTraversor(builder);
+            for (org.jsoup.nodes.Node node : nodes) {
+                traversor.traverse(node);
+            }
+            return fragment;
+        }
+
     }
 
     /** Implements the conversion by walking the input. */
@@ -89,23 +326,41 @@ public class W3CDom {
         private static final String xmlnsPrefix = "xmlns:";
 
         private final Document doc;
-        private final HashMap<String, String> namespaces = new HashMap<String, String>(); // prefix => urn
+        private final boolean namespaceAware;
+        private Map<String, String> namespaces; // prefix => urn, in scope of the current element
+        private final List<Map<String, String>> outerScopes = new ArrayList<Map<String, String>>();
         private Element dest;
 
         public W3CBuilder(Document doc) {
+            this(doc, true);
+        }
+
+        public W3CBuilder(Document doc, boolean namespaceAware) {
+            this(doc, namespaceAware, new HashMap<String, String>());
+        }
+
+        /** Creates a builder for nodes below an element which is not converted by the builder itself.
+         * @param doc the document to build
+         * @param namespaceAware if elements shall be created with namespace
+         * @param namespaces the namespace declarations in scope of the parent of the converted nodes, prefix =&gt; urn. The map
+         *            is not modified by the builder. */
+        public W3CBuilder(Document doc, boolean namespaceAware, Map<String, String> namespaces) {
             this.doc = doc;
+            this.namespaceAware = namespaceAware;
+            this.namespaces = namespaces;
         }
 
         @Override
         public void head(org.jsoup.nodes.Node source, int depth) {
             if (source instanceof org.jsoup.nodes.Element) {
                 org.jsoup.nodes.Element sourceEl = (org.jsoup.nodes.Element) source;
-
-                String prefix = updateNamespaces(sourceEl);
-                String namespace = namespaces.get(prefix);
-
-                Element el = doc.createElementNS(namespace, sourceEl.tagName());
-                copyAttributes(sourceEl, el);
+                // the declarations of an element apply to the element itself and its descendants
+                outerScopes.add(namespaces);
+                if (namespaceAware && declaresNamespaces(sourceEl)) {
+                    namespaces = new HashMap<String, String>(namespaces);
+                    collectNamespaces(sourceEl, namespaces);
+                }
+                Element el = createElement(sourceEl, namespaces);
                 if (dest == null) { // sets up the root
                     doc.appendChild(el);
                 }
@@ -136,20 +391,43 @@ public class W3CDom {
 
         @Override
         public void tail(org.jsoup.nodes.Node source, int depth) {
-            if (source instanceof org.jsoup.nodes.Element && dest.getParentNode() instanceof Element) {
-                dest = (Element) dest.getParentNode(); // undescend. cromulent.
+            if (source instanceof org.jsoup.nodes.Element) {
+                namespaces = outerScopes.remove(outerScopes.size() - 1);
+                if (dest.getParentNode() instanceof Element) {
+                    dest = (Element) dest.getParentNode(); // undescend. cromulent.
+                }
             }
         }
 
+        /** Creates the W3C element for a jsoup element, without its child nodes.
+         * @param sourceEl the jsoup element
+         * @param inScopeNamespaces the namespace declarations in scope of the element, including its own ones */
+        Element createElement(org.jsoup.nodes.Element sourceEl, Map<String, String> inScopeNamespaces) {
+            Element el;
+            if (namespaceAware) {
+                int pos = sourceEl.tagName().indexOf(":");
+                String prefix = pos > 0 ? sourceEl.tagName().substring(0, pos) : "";
+                el = doc.createElementNS(inScopeNamespaces.get(prefix), sourceEl.tagName());
+            }
+            else {
+                el = doc.createElement(sourceEl.tagName());
+            }
+            copyAttributes(sourceEl, el);
+            return el;
+        }
+
         private void copyAttributes(org.jsoup.nodes.Node source, Element el) {
             for (Attribute attribute : source.attributes()) {
-                // catch invalid characters in attribute name
+                // ignore attributes with invalid characters in their name completely. Checking the name before avoids the
+                // expensive exception in most cases; the exception is still caught for names the parser rejects otherwise.
+                if (!mayBeXmlName(attribute.getKey())) {
+                    continue;
+                }
                 try {
                     el.setAttribute(attribute.getKey(), attribute.getValue());
                 }
                 catch (DOMException e) {
                     if (e.getMessage().startsWith("INVALID_CHARACTER_ERR")) {
-                        // ignore the invalid attribute completely
                         continue;
                     }
                     throw e;
@@ -157,8 +435,47 @@ public class W3CDom {
             }
         }
 
-        /** Finds any namespaces defined in this element. Returns any tag prefix. */
-        private String updateNamespaces(org.jsoup.nodes.Element el) {
+        /** Checks a name against the XML 1.0 (5th edition) Name production. Names containing surrogates, i.e. supplementary
+         * characters, are not checked, but left to the DOM implementation.
+         * @return <code>false</code> if the name is definitely invalid. */
+        private static boolean mayBeXmlName(String name) {
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.isHighSurrogate(name.charAt(i)) || Character.isLowSurrogate(name.charAt(i))) {
+                    return true;
+                }
+            }
+            if (name.isEmpty() || !isNameStartChar(name.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (!isNameStartChar(c) && !(c == '-' || c == '.' || (c >= '0' && c <= '9') || c == 0xB7
+                        || (c >= 0x300 && c <= 0x36F) || (c >= 0x203F && c <= 0x2040))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isNameStartChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || (c >= 0xC0 && c <= 0xD6)
+                    || (c >= 0xD8 && c <= 0xF6) || (c >= 0xF8 && c <= 0x2FF) || (c >= 0x370 && c <= 0x37D)
+                    || (c >= 0x37F && c <= 0x1FFF) || (c >= 0x200C && c <= 0x200D) || (c >= 0x2070 && c <= 0x218F)
+                    || (c >= 0x2C00 && c <= 0x2FEF) || (c >= 0x3001 && c <= 0xD7FF) || (c >= 0xF900 && c <= 0xFDCF)
+                    || (c >= 0xFDF0 && c <= 0xFFFD);
+        }
+
+        private static boolean declaresNamespaces(org.jsoup.nodes.Element el) {
+            for (Attribute attr : el.attributes()) {
+                if (attr.getKey().equals(xmlnsKey) || attr.getKey().startsWith(xmlnsPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Finds any namespaces defined in this element. */
+        static void collectNamespaces(org.jsoup.nodes.Element el, Map<String, String> namespaces) {
             // scan the element for namespace declarations
             // like: xmlns="blah" or xmlns:prefix="blah"
             Attributes attributes = el.attributes();
@@ -176,10 +493,6 @@ public class W3CDom {
                 }
                 namespaces.put(prefix, attr.getValue());
             }
-
-            // get the element prefix if any
-            int pos = el.tagName().indexOf(":");
-            return pos > 0 ? el.tagName().substring(0, pos) : "";
         }
 
     }
@@ -77,6 +77,74 @@ public abstract class AbstractDropdownboxTest extends GUITest {
         checkLastStepErrorMessage("Following option is disabled. " + "Disabled entry");
     }
 
+    /** Selecting a disabled entry must fail and keep the current selection. */
+    @Test
+    public void selectEntryDisabled_keepsSelection() {
+        guiTestUIMap.dropDownBox().selectEntry("Disabled entry");
+        checkLastStepStatus(TestStatus.FAILEDAUTOMATION);
+        assertEquals("Partner_Name_value", guiTestUIMap.dropDownBox().getSelectedEntry());
+    }
+
+    /** Selecting entries repeatedly, by label and by index, uses the options read before. */
+    @Test
+    public void selectEntry_repeated() {
+        Dropdownbox box = guiTestUIMap.dropDownBox();
+        box.selectEntry("City");
+        box.selectEntry("City");
+        checkLastStepStatus(TestStatus.PASSED);
+        assertEquals("City_value", box.getSelectedEntry());
+        box.selectEntry(new IndexLocator(0));
+        checkLastStepStatus(TestStatus.PASSED);
+        box.assertIsSelected("Partner Name");
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    /** Selecting an entry must fire the change event of the drop down once. */
+    @Test
+    public void selectEntry_firesChangeEvent() {
+        guiTestUIMap.mutableDropDownBox().selectEntry("Beta");
+        checkLastStepStatus(TestStatus.PASSED);
+        assertEquals("beta_value", guiTestUIMap.mutableDropDownBoxSelection().getText());
+    }
+
+    /** After the page has replaced the options, the new options must be read and selected. */
+    @Test
+    public void selectEntry_afterOptionsChanged() {
+        Dropdownbox box = guiTestUIMap.mutableDropDownBox();
+        box.assertHasLabels(true, "Alpha", "Beta");
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.replaceOptionsLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        box.assertHasLabels(true, "Gamma", "Beta", "Delta");
+        checkLastStepStatus(TestStatus.PASSED);
+        box.assertHasValues(true, "gamma_value", "new_beta_value", "delta_value");
+        checkLastStepStatus(TestStatus.PASSED);
+        // same label at the same index, but another option
+        box.selectEntry("Beta");
+        checkLastStepStatus(TestStatus.PASSED);
+        assertEquals("new_beta_value", guiTestUIMap.mutableDropDownBoxSelection().getText());
+        box.selectEntry(new IndexLocator(2));
+        checkLastStepStatus(TestStatus.PASSED);
+        assertEquals("delta_value", box.getSelectedEntry());
+        box.selectEntry("Alpha");
+        checkLastStepStatus(TestStatus.FAILEDAUTOMATION);
+    }
+
+    /** Selecting by index right after the options have been replaced must not use the index of the previous options. */
+    @Test
+    public void selectEntryByIndex_afterOptionsChanged() {
+        Dropdownbox box = guiTestUIMap.mutableDropDownBox();
+        box.selectEntry("Beta");
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.replaceOptionsLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        box.selectEntry(new IndexLocator(1));
+        checkLastStepStatus(TestStatus.PASSED);
+        assertEquals("new_beta_value", box.getSelectedEntry());
+        box.assertIsSelected("Beta");
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
     /**
      *  negative case to test method {@link org.aludratest.service.gui.component.Dropdownbox#selectEntry(Object)}
      *  <br/> select an entry in disabled dropdownbox
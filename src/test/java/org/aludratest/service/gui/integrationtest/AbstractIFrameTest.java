@@ -44,6 +44,33 @@ public abstract class AbstractIFrameTest extends GUITest {
         assertEquals("Find #2", new IFrameUIMap(aludraWebGUI).findButton().getText());
     }
 
+    @Test
+    public void testSameNamedFrameAfterTopLevel() {
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        assertEquals("Find #3", new IFrameUIMap(aludraWebGUI).findButton().getText());
+        // leaving the frames twice and entering the outer frame again must not keep the driver in the nested frame
+        aludraWebGUI.perform().switchToIFrame(null);
+        aludraWebGUI.perform().switchToIFrame(null);
+        assertEquals("Find", new IFrameUIMap(aludraWebGUI).findButton().getText());
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        assertEquals("Find #1", new IFrameUIMap(aludraWebGUI).findButton().getText());
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        assertEquals("Find #3", new IFrameUIMap(aludraWebGUI).findButton().getText());
+    }
+
+    @Test
+    public void testFrameAfterReload() {
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        assertEquals("Find #1", new IFrameUIMap(aludraWebGUI).findButton().getText());
+        // reloading the page leaves the frame
+        aludraWebGUI.perform().refresh();
+        aludraWebGUI.perform().switchToIFrame(null);
+        assertEquals("Find", new IFrameUIMap(aludraWebGUI).findButton().getText());
+        aludraWebGUI.perform().switchToIFrame(new IdLocator("testframe"));
+        assertEquals("Find #1", new IFrameUIMap(aludraWebGUI).findButton().getText());
+    }
+
     private static class IFrameUIMap extends UIMap {
 
         public IFrameUIMap(AludraWebGUI aludraWebGUI) {
@@ -143,6 +143,32 @@ public abstract class AbstractInputFieldTest extends GUITest {
         checkLastStepStatus(TestStatus.PASSED);
     }
 
+    @Test
+    public void enterWholeField_textArea() {
+        guiTestUIMap.textArea().enter("first line\nsecond line");
+        checkLastStepStatus(TestStatus.PASSED);
+        // the clear strategy detected for the text field must also clear all lines of the text area
+        guiTestUIMap.textField().enter("4711");
+        guiTestUIMap.textField().enter("4712");
+        guiTestUIMap.textArea().enter("third line");
+        guiTestUIMap.textArea().assertTextEquals("third line");
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void enterWholeField_selectAllIgnored() {
+        // let the clear strategy be detected on a regular field first
+        guiTestUIMap.textField().enter("4711");
+        guiTestUIMap.textField().enter("4712");
+        guiTestUIMap.textField().assertTextEquals("4712");
+        checkLastStepStatus(TestStatus.PASSED);
+        // a field which ignores the select-all key chord must still be cleared completely
+        guiTestUIMap.noSelectAllTextField().enter("4711");
+        guiTestUIMap.noSelectAllTextField().enter("4712");
+        guiTestUIMap.noSelectAllTextField().assertTextEquals("4712");
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
     @Test
     public void enterWholeField_noId() {
         guiTestUIMap.noidTextField().assertTextEquals("");
@@ -42,6 +42,73 @@ public abstract class AbstractLinkAndWindowTest extends GUITest {
         checkLastStepStatus(TestStatus.PASSED);
     }
 
+    @Test
+    public void selectWindow_repeated() {
+        guiTestUIMap.testLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        // selecting the current window again must keep the driver in it
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.slowCloseLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.TEST_PAGE_TITLE);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.TEST_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.testLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void selectWindow_closedByApplication() {
+        guiTestUIMap.testLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        // the page closes its own window, which is still the selected one
+        guiTestUIMap.slowCloseLink().click();
+        aludraWebGUI.perform().waitForWindowToBeClosed("el", "op", GUITestUIMap.LINKED_PAGE_TITLE, 5000);
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.FAILEDAUTOMATION);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.TEST_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void selectWindow_titleChanged() {
+        guiTestUIMap.testLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.changeTitleLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.TEST_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        // the title of the other window has been changed meanwhile
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.CHANGED_LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        guiTestUIMap.slowCloseLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.TEST_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.FAILEDAUTOMATION);
+    }
+
+    @Test
+    public void selectWindow_openedLater() {
+        checkOpen(GUITestUIMap.LINKED_PAGE_TITLE, false);
+        // the page opens the window one second after the click
+        guiTestUIMap.slowOpenLink().click();
+        checkLastStepStatus(TestStatus.PASSED);
+        aludraWebGUI.perform().selectWindow(GUITestUIMap.LINKED_PAGE_TITLE);
+        checkLastStepStatus(TestStatus.PASSED);
+        checkOpen(GUITestUIMap.LINKED_PAGE_TITLE, true);
+        guiTestUIMap.slowCloseLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
     @Test
     public void selectWindow_negative() {
         // try to select a window that does not exist
@@ -39,9 +39,13 @@ public class GUITestUIMap extends UIMap {
 
     public static final TitleLocator TEST_PAGE_TITLE = new TitleLocator("Testwebsite");
     public static final TitleLocator LINKED_PAGE_TITLE = new TitleLocator("Beschreibung der Seite");
+    public static final TitleLocator CHANGED_LINKED_PAGE_TITLE = new TitleLocator("Neue Beschreibung der Seite");
 
     public static final GUIElementLocator DROPDOWNBOX_ID = new IdLocator("DropDown:after");
     public static final GUIElementLocator DISABLED_DROPDOWNBOX_ID = new IdLocator("DisabledDropDown:after");
+    public static final GUIElementLocator MUTABLE_DROPDOWNBOX_ID = new IdLocator("mutable_DropDown");
+    public static final GUIElementLocator MUTABLE_DROPDOWNBOX_SELECTION_ID = new IdLocator("mutable_DropDown_selection");
+    public static final GUIElementLocator REPLACE_OPTIONS_ID = new IdLocator("replace_options");
 
     public static final GUIElementLocator TEXT_FIELD_ID = new IdLocator("TextField:after");
 
@@ -76,6 +80,10 @@ public class GUITestUIMap extends UIMap {
     public static final GUIElementLocator FILE_CONTENT_ID = new IdLocator("FileContent");
 
     public static final GUIElementLocator SLOW_CLOSE_ID = new XPathLocator("//a[@id='slow_close']");
+    public static final GUIElementLocator SLOW_OPEN_ID = new XPathLocator("//a[@id='slow_open']");
+    public static final GUIElementLocator CHANGE_TITLE_ID = new XPathLocator("//a[@id='change_title']");
+    public static final GUIElementLocator NAVIGATE_ID = new IdLocator("navigate");
+    public static final GUIElementLocator NAVIGATE_SLOWLY_ID = new IdLocator("navigate_slowly");
 
     // There is no element defined on test web page with this ID
     public static final GUIElementLocator NOT_EXISTING_BUTTON_ID = new IdLocator("test:test:test");
@@ -84,6 +92,7 @@ public class GUITestUIMap extends UIMap {
     public static final GUIElementLocator HOVER_VALUE_ID = new IdLocator("hover_hideshow");
 
     public static final GUIElementLocator TEXTAREA_ID = new IdLocator("test_textarea");
+    public static final GUIElementLocator NO_SELECT_ALL_TEXT_FIELD_ID = new IdLocator("no_select_all_TextField");
     public static final GUIElementLocator TEXTAREA_READONLY_ID = new IdLocator("test_textarea_readonly");
 
     public GUITestUIMap(AludraWebGUI aludraGUI) {
@@ -98,6 +107,18 @@ public class GUITestUIMap extends UIMap {
         return aludraGUI.getComponentFactory().createDropdownbox(DISABLED_DROPDOWNBOX_ID);
     }
 
+    public Dropdownbox mutableDropDownBox() {
+        return aludraGUI.getComponentFactory().createDropdownbox(MUTABLE_DROPDOWNBOX_ID);
+    }
+
+    public Label mutableDropDownBoxSelection() {
+        return aludraGUI.getComponentFactory().createLabel(MUTABLE_DROPDOWNBOX_SELECTION_ID);
+    }
+
+    public Link replaceOptionsLink() {
+        return aludraGUI.getComponentFactory().createLink(REPLACE_OPTIONS_ID);
+    }
+
     public InputField textField() {
         return aludraGUI.getComponentFactory().createInputField(TEXT_FIELD_ID);
     }
@@ -194,6 +215,14 @@ public class GUITestUIMap extends UIMap {
         return aludraGUI.getComponentFactory().createLink(SLOW_CLOSE_ID);
     }
 
+    public Link slowOpenLink() {
+        return aludraGUI.getComponentFactory().createLink(SLOW_OPEN_ID);
+    }
+
+    public Link changeTitleLink() {
+        return aludraGUI.getComponentFactory().createLink(CHANGE_TITLE_ID);
+    }
+
     public Label hoverText() {
         return aludraGUI.getComponentFactory().createLabel(HOVER_TEXT_ID);
     }
@@ -209,5 +238,9 @@ public class GUITestUIMap extends UIMap {
     public InputField textAreaReadOnly() {
         return aludraGUI.getComponentFactory().createInputField(TEXTAREA_READONLY_ID);
     }
+
+    public InputField noSelectAllTextField() {
+        return aludraGUI.getComponentFactory().createInputField(NO_SELECT_ALL_TEXT_FIELD_ID);
+    }
     
 }
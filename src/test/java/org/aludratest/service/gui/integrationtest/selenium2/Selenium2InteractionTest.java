@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.integrationtest.selenium2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.gui.integrationtest.GUITest;
+import org.aludratest.service.gui.integrationtest.GUITestUIMap;
+import org.aludratest.service.gui.web.selenium.selenium2.AbstractSelenium2Action;
+import org.aludratest.service.gui.web.selenium.selenium2.ActionPipeline;
+import org.aludratest.service.gui.web.selenium.selenium2.AludraSelenium2;
+import org.aludratest.service.gui.web.selenium.selenium2.FormFill;
+import org.aludratest.service.gui.web.selenium.selenium2.Selenium2Interaction;
+import org.aludratest.service.gui.web.selenium.selenium2.Selenium2Wrapper;
+import org.aludratest.testcase.TestStatus;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the features of {@link Selenium2Interaction} which are not part of the
+ * {@link org.aludratest.service.gui.web.WebGUIInteraction} interface.
+ */
+@SuppressWarnings("javadoc")
+public class Selenium2InteractionTest extends GUITest {
+
+    private static final String CHANGED_TITLE_SCRIPT = "return document.title == '"
+            + GUITestUIMap.CHANGED_LINKED_PAGE_TITLE + "';";
+
+    /** Activates Selenium 2 before the tests are executed. */
+    @BeforeClass
+    public static void setUpSelenium2() {
+        activateSelenium2();
+    }
+
+    @Test
+    public void runPipeline_awaitScriptAfterNavigation() throws Exception {
+        // the navigation starts after the click, so the await step is first evaluated in the unloading document
+        ActionPipeline pipeline = new ActionPipeline().click(GUITestUIMap.NAVIGATE_SLOWLY_ID)
+                .awaitScript("return document.title == '" + GUITestUIMap.LINKED_PAGE_TITLE + "';")
+                .click(GUITestUIMap.CHANGE_TITLE_ID).awaitScript(CHANGED_TITLE_SCRIPT);
+        getSelenium2Interaction().runPipeline(pipeline, DEFAULT_TIMEOUT);
+        guiTestUIMap.slowCloseLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void runPipeline_awaitElementAfterNavigation() throws Exception {
+        ActionPipeline pipeline = new ActionPipeline().click(GUITestUIMap.NAVIGATE_ID)
+                .awaitElement(GUITestUIMap.SLOW_CLOSE_ID).click(GUITestUIMap.CHANGE_TITLE_ID)
+                .awaitScript(CHANGED_TITLE_SCRIPT);
+        getSelenium2Interaction().runPipeline(pipeline, DEFAULT_TIMEOUT);
+        guiTestUIMap.slowCloseLink().assertPresent();
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void fillForm_mixedFields() throws Exception {
+        FormFill form = new FormFill().type(GUITestUIMap.TEXT_FIELD_ID, "MyTest")
+                .typeNatively(GUITestUIMap.TEXTAREA_ID, "typed natively").selectIndex(GUITestUIMap.DROPDOWNBOX_ID, 2)
+                .check(GUITestUIMap.FIRST_CHECKBOX_ID, true).type(GUITestUIMap.READONLY_TEXT_FIELD_ID, "fails")
+                .check(GUITestUIMap.SECOND_CHECKBOX_ID, false);
+        List<FormFill.Result> results = getSelenium2Wrapper().fillForm(form, DEFAULT_TIMEOUT);
+        assertEquals(6, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(results.get(i).toString(), i != 4, results.get(i).isSuccess());
+        }
+        assertEquals("Input field is read-only", results.get(4).getFailure());
+        // the fields after the failed one have been applied as well
+        guiTestUIMap.textField().assertTextEquals("MyTest");
+        guiTestUIMap.textArea().assertTextEquals("typed natively");
+        assertEquals("City_value", guiTestUIMap.dropDownBox().getSelectedEntry());
+        guiTestUIMap.firstCheckBox().assertChecked("true");
+        guiTestUIMap.secondCheckBox().assertChecked("false");
+        guiTestUIMap.readonlyTextField().assertTextEquals("This is readonly");
+        checkLastStepStatus(TestStatus.PASSED);
+    }
+
+    @Test
+    public void fillForm_disabledEntry() throws Exception {
+        FormFill form = new FormFill().selectLabel(GUITestUIMap.DROPDOWNBOX_ID, "Disabled entry")
+                .type(GUITestUIMap.TEXT_FIELD_ID, "MyTest");
+        try {
+            getSelenium2Interaction().fillForm(form, DEFAULT_TIMEOUT);
+            fail("AutomationException expected");
+        }
+        catch (AutomationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Selection Item is disabled"));
+            assertFalse(e.getMessage(), e.getMessage().contains("TextField"));
+        }
+        assertEquals("Partner_Name_value", guiTestUIMap.dropDownBox().getSelectedEntry());
+        guiTestUIMap.textField().assertTextEquals("MyTest");
+        checkLastStepStatus(TestStatus.PASSED);
+
+        List<FormFill.Result> results = getSelenium2Wrapper().fillForm(
+                new FormFill().selectIndex(GUITestUIMap.DROPDOWNBOX_ID, 13), DEFAULT_TIMEOUT);
+        assertEquals("Selection Item is disabled", results.get(0).getFailure());
+    }
+
+    /** The framework only proxies the interface of the service, so the implementation is taken from the proxy. Its methods
+     * are invoked directly, i.e. errors are thrown instead of being logged as test steps. */
+    private Selenium2Interaction getSelenium2Interaction() throws Exception {
+        InvocationHandler handler = Proxy.getInvocationHandler(aludraWebGUI);
+        Field realObject = handler.getClass().getDeclaredField("realObject");
+        realObject.setAccessible(true);
+        return (Selenium2Interaction) ((AludraSelenium2) realObject.get(handler)).perform();
+    }
+
+    private Selenium2Wrapper getSelenium2Wrapper() throws Exception {
+        Field wrapper = AbstractSelenium2Action.class.getDeclaredField("wrapper");
+        wrapper.setAccessible(true);
+        return (Selenium2Wrapper) wrapper.get(getSelenium2Interaction());
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings("javadoc")
+public class AuthenticatingHttpProxyTest {
+
+    private ServerSocket target;
+
+    private AuthenticatingHttpProxy proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        target = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (proxy != null) {
+            proxy.stop();
+        }
+        target.close();
+    }
+
+    @Test
+    public void testConnectionIsClosedWhenAllWorkersAreBusy() throws Exception {
+        int proxyPort = findFreePort();
+        proxy = new AuthenticatingHttpProxy(proxyPort, "localhost", target.getLocalPort());
+        proxy.setMaxWorkerThreads(1);
+        proxy.setShutdownTimeout(100);
+        proxy.start();
+
+        // the first connection occupies the only worker while it is kept open
+        Socket first = new Socket(InetAddress.getLocalHost(), proxyPort);
+        Socket second = new Socket(InetAddress.getLocalHost(), proxyPort);
+        try {
+            assertClosedByPeer(second);
+        }
+        finally {
+            second.close();
+            first.close();
+        }
+    }
+
+    @Test
+    public void testSharedCacheDoesNotMixCredentials() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")).getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        AuthenticatingHttpProxy other = null;
+        try {
+            int proxyPort = findFreePort();
+            proxy = new AuthenticatingHttpProxy(proxyPort, "127.0.0.1", server.getAddress().getPort());
+            proxy.setBasicAuthentication("userA", "secretA");
+            proxy.setResponseCache(cache);
+            proxy.start();
+            int otherPort = findFreePort();
+            other = new AuthenticatingHttpProxy(otherPort, "127.0.0.1", server.getAddress().getPort());
+            other.setBasicAuthentication("userB", "secretB");
+            other.setResponseCache(cache);
+            other.start();
+
+            String userA = fetch(proxyPort, "/style.css");
+            String userB = fetch(otherPort, "/style.css");
+            assertTrue(userA.startsWith("Basic "));
+            assertFalse(userA.equals(userB));
+            // each proxy is served its own cached response
+            assertEquals(userA, fetch(proxyPort, "/style.css"));
+            assertEquals(userB, fetch(otherPort, "/style.css"));
+            assertEquals(2, cache.getHitCount());
+        }
+        finally {
+            if (other != null) {
+                other.stop();
+            }
+            server.stop(0);
+        }
+    }
+
+    private static String fetch(int proxyPort, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + proxyPort + path).openConnection();
+        InputStream in = connection.getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void assertClosedByPeer(Socket socket) throws IOException {
+        // a queued connection would neither be served nor closed, so the read would time out
+        socket.setSoTimeout(5000);
+        try {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        catch (SocketException e) {
+            // connection reset, i.e. closed by the proxy as well
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+}
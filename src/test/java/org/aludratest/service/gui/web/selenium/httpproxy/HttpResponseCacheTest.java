@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("javadoc")
+public class HttpResponseCacheTest {
+
+    private static final HttpHost TARGET = new HttpHost("localhost", 8080);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCreateKey() {
+        BasicHttpRequest request = get("/style.css");
+        assertEquals("localhost:8080/style.css|", HttpResponseCache.createKey(TARGET, request));
+        request.addHeader("Accept-Encoding", "gzip");
+        assertEquals("localhost:8080/style.css|gzip", HttpResponseCache.createKey(TARGET, request));
+    }
+
+    @Test
+    public void testCreateKeyDependsOnCredentials() {
+        BasicHttpRequest userA = get("/style.css");
+        userA.addHeader("Authorization", "Basic YTph");
+        BasicHttpRequest userB = get("/style.css");
+        userB.addHeader("Authorization", "Basic Yjpi");
+        assertFalse(HttpResponseCache.createKey(TARGET, userA).equals(HttpResponseCache.createKey(TARGET, userB)));
+        assertEquals(HttpResponseCache.createKey(TARGET, userA), HttpResponseCache.createKey(TARGET, copy(userA)));
+
+        BasicHttpRequest tenantA = get("/style.css");
+        tenantA.addHeader("X-Tenant", "a");
+        BasicHttpRequest tenantB = get("/style.css");
+        tenantB.addHeader("X-Tenant", "b");
+        List<String> names = Collections.singletonList("X-Tenant");
+        assertFalse(HttpResponseCache.createKey(TARGET, tenantA, names).equals(
+                HttpResponseCache.createKey(TARGET, tenantB, names)));
+        // headers which are not injected by the proxy do not split the cache
+        assertEquals(HttpResponseCache.createKey(TARGET, tenantA), HttpResponseCache.createKey(TARGET, tenantB));
+    }
+
+    @Test
+    public void testIsCacheable() {
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        assertTrue(cache.isCacheable(get("/style.css")));
+        assertFalse(cache.isCacheable(new BasicHttpRequest("POST", "/style.css", HttpVersion.HTTP_1_1)));
+        BasicHttpRequest noCache = get("/style.css");
+        noCache.addHeader("Cache-Control", "no-cache");
+        assertFalse(cache.isCacheable(noCache));
+        BasicHttpRequest pragma = get("/style.css");
+        pragma.addHeader("Pragma", "no-cache");
+        assertFalse(cache.isCacheable(pragma));
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        BasicHttpRequest request = get("/app.js");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        HttpResponse response = response(HttpStatus.SC_OK, "alert(1);", "Cache-Control", "max-age=60");
+        cache.store(key, request, response);
+        // the entity of the response to forward has been replaced by a buffered copy
+        assertEquals("alert(1);", EntityUtils.toString(response.getEntity()));
+        assertEquals(9, cache.getMemorySize());
+
+        HttpResponseCache.Entry entry = cache.lookup(key);
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+
+        HttpResponse cached = new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Error");
+        entry.writeTo(get("/app.js"), cached);
+        assertEquals(HttpStatus.SC_OK, cached.getStatusLine().getStatusCode());
+        assertEquals("alert(1);", EntityUtils.toString(cached.getEntity()));
+    }
+
+    @Test
+    public void testUncacheableResponsesAreNotStored() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        BasicHttpRequest request = get("/page");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        cache.store(key, request, response(HttpStatus.SC_OK, "x", "Cache-Control", "no-store"));
+        cache.store(key, request, response(HttpStatus.SC_OK, "x", "Cache-Control", "private, max-age=60"));
+        cache.store(key, request, response(HttpStatus.SC_OK, "x", "Cache-Control", "max-age=60", "Set-Cookie", "a=b"));
+        cache.store(key, request, response(HttpStatus.SC_OK, "x", "Cache-Control", "max-age=60", "Vary", "Cookie"));
+        cache.store(key, request, response(HttpStatus.SC_NOT_FOUND, "x", "Cache-Control", "max-age=60"));
+        // no validator and no freshness information
+        cache.store(key, request, response(HttpStatus.SC_OK, "x"));
+        assertNull(cache.lookup(key));
+        assertEquals(0, cache.getMemorySize());
+    }
+
+    @Test
+    public void testResponsesLargerThanEntryLimitAreNotStored() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(64, null, 0, null, 0);
+        BasicHttpRequest request = get("/big");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        cache.store(key, request, response(HttpStatus.SC_OK, "0123456789", "Cache-Control", "max-age=60"));
+        assertNull(cache.lookup(key));
+    }
+
+    @Test
+    public void testForcedPatternOverridesResponseHeaders() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(1024, new String[] { ".*\\.png" }, 60, null, 0);
+        BasicHttpRequest request = get("/img/logo.png?v=2");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        cache.store(key, request, response(HttpStatus.SC_OK, "PNG", "Cache-Control", "no-store"));
+        HttpResponseCache.Entry entry = cache.lookup(key);
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+    }
+
+    @Test
+    public void testStaleEntryIsRevalidated() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        BasicHttpRequest request = get("/data.json");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        cache.store(key, request, response(HttpStatus.SC_OK, "{}", "Cache-Control", "no-cache", "ETag", "\"v1\""));
+
+        HttpResponseCache.Entry entry = cache.lookup(key);
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        assertEquals(1, cache.getMissCount());
+
+        BasicHttpRequest forwarded = get("/data.json");
+        assertTrue(cache.addValidators(forwarded, entry));
+        assertEquals("\"v1\"", forwarded.getFirstHeader("If-None-Match").getValue());
+        // validators sent by the client are not replaced
+        assertFalse(cache.addValidators(forwarded, entry));
+
+        cache.revalidated(key, entry, response(HttpStatus.SC_NOT_MODIFIED, null, "Cache-Control", "max-age=60"));
+        assertTrue(cache.lookup(key).isFresh());
+    }
+
+    @Test
+    public void testMatchingClientValidatorGetsNotModified() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(1024, null, 0, null, 0);
+        BasicHttpRequest request = get("/app.css");
+        String key = HttpResponseCache.createKey(TARGET, request);
+        cache.store(key, request, response(HttpStatus.SC_OK, "body{}", "Cache-Control", "max-age=60", "ETag", "\"abc\""));
+
+        BasicHttpRequest conditional = get("/app.css");
+        conditional.addHeader("If-None-Match", "\"abc\"");
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Error");
+        cache.lookup(key).writeTo(conditional, response);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+        assertNull(response.getEntity());
+        assertFalse(response.containsHeader("Content-Length"));
+    }
+
+    @Test
+    public void testEvictedEntriesMoveToDisk() throws IOException {
+        File directory = folder.newFolder("cache");
+        // 16 bytes in memory, each entry may have up to 2 bytes
+        HttpResponseCache cache = new HttpResponseCache(16, null, 0, directory, 1024);
+        String[] keys = new String[9];
+        for (int i = 0; i < keys.length; i++) {
+            BasicHttpRequest request = get("/file" + i);
+            keys[i] = HttpResponseCache.createKey(TARGET, request);
+            cache.store(keys[i], request, response(HttpStatus.SC_OK, "A" + i, "Cache-Control", "max-age=60"));
+        }
+        assertEquals(16, cache.getMemorySize());
+        assertEquals(1, directory.listFiles().length);
+
+        // the least recently used entry is read back from disk
+        HttpResponseCache.Entry entry = cache.lookup(keys[0]);
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+        HttpResponse restored = new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Error");
+        entry.writeTo(get("/file0"), restored);
+        assertArrayEquals("A0".getBytes("UTF-8"), EntityUtils.toByteArray(restored.getEntity()));
+        assertEquals(16, cache.getMemorySize());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static BasicHttpRequest copy(BasicHttpRequest request) {
+        BasicHttpRequest copy = get(request.getRequestLine().getUri());
+        copy.setHeaders(request.getAllHeaders());
+        return copy;
+    }
+
+    private static BasicHttpRequest get(String uri) {
+        return new BasicHttpRequest("GET", uri, HttpVersion.HTTP_1_1);
+    }
+
+    private static HttpResponse response(int status, String body, String... headers) throws IOException {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "Status " + status);
+        for (int i = 0; i < headers.length; i += 2) {
+            response.addHeader(headers[i], headers[i + 1]);
+        }
+        if (body != null) {
+            byte[] bytes = body.getBytes("UTF-8");
+            response.setEntity(new ByteArrayEntity(bytes));
+            response.addHeader("Content-Length", String.valueOf(bytes.length));
+        }
+        return response;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class RequestRuleTest {
+
+    @Test
+    public void testMatchesWholeUri() {
+        RequestRule rule = RequestRule.block(".*/analytics\\.js");
+        assertTrue(rule.matches("/static/analytics.js"));
+        assertFalse(rule.matches("/static/analytics.js?v=1"));
+        assertFalse(rule.matches("/static/analytics.json"));
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        RequestRule rule = RequestRule.block("/ads/.*");
+        assertEquals(RequestRule.Action.BLOCK, rule.getAction());
+        HttpResponse response = newResponse();
+        rule.writeTo(response);
+        assertEquals(204, response.getStatusLine().getStatusCode());
+        assertNull(response.getEntity());
+    }
+
+    @Test
+    public void testStub() throws Exception {
+        RequestRule rule = RequestRule.stub("/api/user", 200, "application/json; charset=UTF-8", "{\"name\":\"M\u00fcller\"}");
+        assertEquals(RequestRule.Action.STUB, rule.getAction());
+        HttpResponse response = newResponse();
+        rule.writeTo(response);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals("application/json; charset=UTF-8", response.getEntity().getContentType().getValue());
+        assertEquals("{\"name\":\"M\u00fcller\"}", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void testStubWithoutBody() throws Exception {
+        RequestRule rule = RequestRule.stub("/missing", 404, null, null);
+        HttpResponse response = newResponse();
+        rule.writeTo(response);
+        assertEquals(404, response.getStatusLine().getStatusCode());
+        assertNull(response.getEntity());
+    }
+
+    @Test
+    public void testDelay() {
+        RequestRule rule = RequestRule.delay("/slow/.*", 1500);
+        assertEquals(RequestRule.Action.DELAY, rule.getAction());
+        assertEquals(1500, rule.getDelayMillis());
+        assertEquals("DELAY /slow/.* (1500 ms)", rule.toString());
+    }
+
+    @Test
+    public void testProxyAppliesFirstMatchingRule() {
+        AuthenticatingHttpProxy proxy = new AuthenticatingHttpProxy(0, "localhost", 8080);
+        RequestRule stub = RequestRule.stub("/api/.*", 200, "text/plain", "stub");
+        RequestRule block = RequestRule.block("/api/user");
+        proxy.addRequestRule(stub);
+        proxy.addRequestRule(block);
+        assertSame(stub, proxy.findRequestRule("/api/user"));
+        assertNull(proxy.findRequestRule("/index.html"));
+        proxy.clearRequestRules();
+        assertNull(proxy.findRequestRule("/api/user"));
+    }
+
+    private static HttpResponse newResponse() throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Error");
+        response.setEntity(new StringEntity("original"));
+        return response;
+    }
+
+}
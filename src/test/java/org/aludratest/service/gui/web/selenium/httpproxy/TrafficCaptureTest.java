@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.httpproxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TrafficCaptureTest {
+
+    @Test
+    public void testSensitiveHeadersAreRedacted() throws Exception {
+        TrafficCapture capture = new TrafficCapture(10);
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/index.html", HttpVersion.HTTP_1_1);
+        request.addHeader("Authorization", "Basic dXNlcjpzZWNyZXQ=");
+        request.addHeader("proxy-authorization", "Basic cHJveHk6c2VjcmV0");
+        request.addHeader("Cookie", "JSESSIONID=abc123");
+        request.addHeader("Accept", "text/html");
+        TrafficCapture.Entry entry = capture.startEntry(new HttpHost("localhost", 8080), request);
+
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Set-Cookie", "JSESSIONID=def456; Path=/");
+        response.addHeader("Content-Type", "text/html");
+        entry.responseReady(response, null);
+        capture.add(entry);
+
+        StringWriter writer = new StringWriter();
+        capture.writeHar(writer);
+        String har = writer.toString();
+        assertFalse(har.contains("dXNlcjpzZWNyZXQ="));
+        assertFalse(har.contains("cHJveHk6c2VjcmV0"));
+        assertFalse(har.contains("abc123"));
+        assertFalse(har.contains("def456"));
+        assertTrue(har.contains("{\"name\":\"Authorization\",\"value\":\"[redacted]\"}"));
+        assertTrue(har.contains("{\"name\":\"Set-Cookie\",\"value\":\"[redacted]\"}"));
+        assertTrue(har.contains("{\"name\":\"Accept\",\"value\":\"text/html\"}"));
+        assertTrue(har.contains("{\"name\":\"Content-Type\",\"value\":\"text/html\"}"));
+    }
+
+    @Test
+    public void testRingBufferKeepsNewestEntries() throws Exception {
+        TrafficCapture capture = new TrafficCapture(2);
+        assertTrue(capture.isEmpty());
+        for (int i = 0; i < 3; i++) {
+            capture.add(capture.startEntry(new HttpHost("localhost", 8080), new BasicHttpRequest("GET", "/page" + i,
+                    HttpVersion.HTTP_1_1)));
+        }
+        assertFalse(capture.isEmpty());
+        StringWriter writer = new StringWriter();
+        capture.writeHar(writer);
+        String har = writer.toString();
+        assertFalse(har.contains("/page0"));
+        assertTrue(har.indexOf("/page1") > 0);
+        assertTrue(har.indexOf("/page2") > har.indexOf("/page1"));
+        assertEquals('}', har.charAt(har.length() - 1));
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings({ "javadoc", "restriction" })
+public class DevToolsTargetsTest {
+
+    private static final String TARGETS = "[{\"id\":\"AAA\",\"type\":\"page\",\"title\":\"First\",\"url\":\"http://a/\"},"
+            + "{\"id\":\"BBB\",\"type\":\"page\",\"title\":\"http://b/\",\"url\":\"http://b/\"},"
+            + "{\"id\":\"CCC\",\"type\":\"service_worker\",\"title\":\"Worker\",\"url\":\"http://c/\"}]";
+
+    private HttpServer server;
+
+    private volatile String hostHeader;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/json/list", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                hostHeader = exchange.getRequestHeaders().getFirst("Host");
+                byte[] body = TARGETS.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCreateListUrlResolvesHostName() throws IOException {
+        String url = DevToolsTargets.createListUrl("localhost", 9222);
+        assertTrue(url, url.equals("http://127.0.0.1:9222/json/list") || url.startsWith("http://[0:0:0:0:0:0:0:1]:9222/"));
+        assertEquals("http://10.1.2.3:9222/json/list", DevToolsTargets.createListUrl("10.1.2.3", 9222));
+    }
+
+    @Test
+    public void testGetTitles() {
+        DevToolsTargets targets = new DevToolsTargets("127.0.0.1", server.getAddress().getPort());
+        try {
+            Map<String, String> titles = targets.getTitles(Arrays.asList("CDwindow-AAA", "CDwindow-BBB", "CDwindow-CCC",
+                    "CDwindow-DDD"));
+            assertEquals(2, titles.size());
+            assertEquals("First", titles.get("CDwindow-AAA"));
+            // DevTools reports the URL as title of pages without title
+            assertEquals("", titles.get("CDwindow-BBB"));
+            assertEquals("127.0.0.1:" + server.getAddress().getPort(), hostHeader);
+        }
+        finally {
+            targets.close();
+        }
+    }
+
+    @Test
+    public void testUnavailableEndpointIsNotAskedAgain() {
+        server.stop(0);
+        DevToolsTargets targets = new DevToolsTargets("127.0.0.1", server.getAddress().getPort());
+        try {
+            assertTrue(targets.getTitles(Arrays.asList("CDwindow-AAA")).isEmpty());
+            hostHeader = null;
+            assertTrue(targets.getTitles(Arrays.asList("CDwindow-AAA")).isEmpty());
+            assertEquals(null, hostHeader);
+        }
+        finally {
+            targets.close();
+        }
+    }
+
+}
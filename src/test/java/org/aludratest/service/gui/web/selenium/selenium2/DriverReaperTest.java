@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+@SuppressWarnings("javadoc")
+public class DriverReaperTest {
+
+    @Test
+    public void testAfterQuitRunsOnce() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        DriverReaper.quit(createDriver(0), 200, new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                finished.countDown();
+            }
+        });
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        // the reaper must not run the action again when the timeout elapses
+        Thread.sleep(400);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testAwaitPendingQuitsWaitsForSlowQuit() {
+        final AtomicInteger runs = new AtomicInteger();
+        DriverReaper.quit(createDriver(300), 5000, new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+        DriverReaper.awaitPendingQuits();
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testAwaitPendingQuitsStopsAtTimeout() {
+        final AtomicInteger runs = new AtomicInteger();
+        DriverReaper.quit(createDriver(60000), 300, new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+        long start = System.currentTimeMillis();
+        DriverReaper.awaitPendingQuits();
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Waited " + duration + " ms", duration < 5000);
+    }
+
+    private static WebDriver createDriver(final long quitMillis) {
+        return (WebDriver) Proxy.newProxyInstance(DriverReaperTest.class.getClassLoader(), new Class<?>[] { WebDriver.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("quit".equals(method.getName()) && quitMillis > 0) {
+                            Thread.sleep(quitMillis);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.selenium2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class WindowRegistryTest {
+
+    private static final List<String> HANDLES = Arrays.asList("w1", "w2", "w3");
+
+    @Test
+    public void testUnknownWindowsNeedQuery() {
+        WindowRegistry registry = new WindowRegistry(60000);
+        assertEquals(HANDLES, registry.getHandlesWithoutTitle(HANDLES));
+        assertEquals(HANDLES, registry.getHandlesWithoutName(HANDLES));
+        assertFalse(registry.isUpToDate(HANDLES));
+        assertEquals(0, registry.getHitCount());
+        assertEquals(6, registry.getMissCount());
+    }
+
+    @Test
+    public void testCachedTitlesAndNames() {
+        WindowRegistry registry = new WindowRegistry(60000);
+        registry.putTitle("w1", "First");
+        registry.putTitle("w2", "Second");
+        registry.putName("w1", "main");
+        assertEquals(Collections.singletonList("w3"), registry.getHandlesWithoutTitle(HANDLES));
+        assertEquals(Arrays.asList("w2", "w3"), registry.getHandlesWithoutName(HANDLES));
+        assertEquals(3, registry.getHitCount());
+
+        Map<String, String> titles = registry.getTitles(Arrays.asList("w2", "w3", "w1"));
+        assertEquals(Arrays.asList("w2", "w1"), Arrays.asList(titles.keySet().toArray()));
+        assertEquals("Second", titles.get("w2"));
+        assertEquals(Collections.singletonList("main"), registry.getNames(HANDLES));
+        assertEquals("w2", registry.findHandleByTitle("Second"));
+        assertNull(registry.findHandleByTitle("Third"));
+    }
+
+    @Test
+    public void testEmptyTitleIsNeverUpToDate() {
+        WindowRegistry registry = new WindowRegistry(60000);
+        registry.putTitle("w1", "");
+        registry.putName("w1", "");
+        assertEquals(Collections.singletonList("w1"), registry.getHandlesWithoutTitle(Collections.singletonList("w1")));
+        // an empty name is a valid name
+        assertTrue(registry.getHandlesWithoutName(Collections.singletonList("w1")).isEmpty());
+        assertFalse(registry.isUpToDate(Collections.singletonList("w1")));
+    }
+
+    @Test
+    public void testIsUpToDate() {
+        WindowRegistry registry = new WindowRegistry(60000);
+        registry.putTitle("w1", "First");
+        registry.putTitle("w2", "Second");
+        assertTrue(registry.isUpToDate(Arrays.asList("w1", "w2")));
+        assertEquals(2, registry.getHitCount());
+        // a new window
+        assertFalse(registry.isUpToDate(HANDLES));
+        // a closed window
+        assertFalse(registry.isUpToDate(Collections.singletonList("w1")));
+        // a replaced window
+        assertFalse(registry.isUpToDate(Arrays.asList("w1", "w3")));
+    }
+
+    @Test
+    public void testMaxAge() throws InterruptedException {
+        WindowRegistry registry = new WindowRegistry(50);
+        registry.putTitle("w1", "First");
+        registry.putName("w1", "main");
+        assertTrue(registry.isUpToDate(Collections.singletonList("w1")));
+        Thread.sleep(100);
+        assertFalse(registry.isUpToDate(Collections.singletonList("w1")));
+        assertEquals(Collections.singletonList("w1"), registry.getHandlesWithoutTitle(Collections.singletonList("w1")));
+        assertEquals(Collections.singletonList("w1"), registry.getHandlesWithoutName(Collections.singletonList("w1")));
+        // outdated titles are still available for lookups, which have to verify them
+        assertEquals("w1", registry.findHandleByTitle("First"));
+        registry.putTitle("w1", "First again");
+        assertTrue(registry.isUpToDate(Collections.singletonList("w1")));
+    }
+
+    @Test
+    public void testZeroMaxAgeDisablesCaching() {
+        WindowRegistry registry = new WindowRegistry(0);
+        registry.putTitle("w1", "First");
+        registry.putName("w1", "main");
+        assertFalse(registry.isUpToDate(Collections.singletonList("w1")));
+        assertEquals(Collections.singletonList("w1"), registry.getHandlesWithoutTitle(Collections.singletonList("w1")));
+        assertEquals(Collections.singletonList("w1"), registry.getHandlesWithoutName(Collections.singletonList("w1")));
+    }
+
+    @Test
+    public void testRetainAllRemoveAndClear() {
+        WindowRegistry registry = new WindowRegistry(60000);
+        registry.putTitle("w1", "First");
+        registry.putTitle("w2", "Second");
+        registry.putTitle("w3", "Third");
+        registry.retainAll(Arrays.asList("w1", "w3"));
+        assertNull(registry.findHandleByTitle("Second"));
+        assertTrue(registry.isUpToDate(Arrays.asList("w1", "w3")));
+        registry.remove("w3");
+        assertEquals(Collections.singleton("w1"), registry.getTitles(HANDLES).keySet());
+        registry.clear();
+        assertTrue(registry.getTitles(HANDLES).isEmpty());
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Checks that {@link BrowserXPath#toNodeList(List)} materializes the serialized script results as detached nodes. */
+@SuppressWarnings("javadoc")
+public class BrowserXPathTest {
+
+    @Test
+    public void testRootElement() {
+        Element html = (Element) single(1, "HTML", "#document", "<html><head></head><body><p>x</p></body></html>");
+        assertEquals("html", html.getNodeName());
+        assertEquals("body", html.getLastChild().getNodeName());
+        assertDetached(html);
+    }
+
+    @Test
+    public void testBodyElement() {
+        // parsed in the context of the html element, which implies a head before the body
+        Element body = (Element) single(1, "BODY", "HTML", "<body class=\"main\"><p>x</p></body>");
+        assertEquals("body", body.getNodeName());
+        assertEquals("main", body.getAttribute("class"));
+        assertEquals("p", body.getFirstChild().getNodeName());
+        assertDetached(body);
+    }
+
+    @Test
+    public void testTableRow() {
+        Element row = (Element) single(1, "TR", "TBODY", "<tr><td>1</td><td>2</td></tr>");
+        assertEquals("tr", row.getNodeName());
+        assertEquals(2, row.getChildNodes().getLength());
+        assertDetached(row);
+    }
+
+    @Test
+    public void testAttribute() {
+        Node attr = single(2, "id", "", "main");
+        assertEquals(Node.ATTRIBUTE_NODE, attr.getNodeType());
+        assertEquals("id", attr.getNodeName());
+        assertEquals("main", attr.getNodeValue());
+        assertDetached(attr);
+    }
+
+    @Test
+    public void testTextAndComment() {
+        NodeList nodes = BrowserXPath.toNodeList(Arrays.asList(serialized(3, "#text", "P", "some text"),
+                serialized(8, "#comment", "BODY", " a comment ")));
+        assertEquals(2, nodes.getLength());
+        assertEquals(Node.TEXT_NODE, nodes.item(0).getNodeType());
+        assertEquals("some text", nodes.item(0).getNodeValue());
+        assertEquals(Node.COMMENT_NODE, nodes.item(1).getNodeType());
+        assertEquals(" a comment ", nodes.item(1).getNodeValue());
+        assertDetached(nodes.item(0));
+        assertDetached(nodes.item(1));
+    }
+
+    @Test
+    public void testSeveralElementsAreNotSiblings() {
+        NodeList nodes = BrowserXPath.toNodeList(Arrays.asList(serialized(1, "LI", "UL", "<li>a</li>"),
+                serialized(1, "LI", "UL", "<li>b</li>")));
+        assertEquals(2, nodes.getLength());
+        assertEquals("a", nodes.item(0).getTextContent());
+        assertEquals("b", nodes.item(1).getTextContent());
+        assertDetached(nodes.item(0));
+        assertDetached(nodes.item(1));
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static void assertDetached(Node node) {
+        assertNull(node.getParentNode());
+        assertNull(node.getPreviousSibling());
+        assertNull(node.getNextSibling());
+    }
+
+    private static Node single(int type, String name, String parentName, String content) {
+        List<List<Object>> serializedNodes = new ArrayList<List<Object>>();
+        serializedNodes.add(serialized(type, name, parentName, content));
+        NodeList nodes = BrowserXPath.toNodeList(serializedNodes);
+        assertEquals(1, nodes.getLength());
+        return nodes.item(0);
+    }
+
+    private static List<Object> serialized(int type, String name, String parentName, String content) {
+        // numbers are returned as Long by WebDriver
+        return Arrays.<Object> asList(Long.valueOf(type), name, parentName, content);
+    }
+
+}
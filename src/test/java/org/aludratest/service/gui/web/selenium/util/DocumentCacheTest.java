@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+@SuppressWarnings("javadoc")
+public class DocumentCacheTest {
+
+    @Test
+    public void testHit() throws Exception {
+        DocumentCache cache = new DocumentCache(1000, false);
+        Document document = newDocument();
+        cache.put("p/1", "<html>A</html>", document, 100);
+        assertSame(document, cache.get("p/1", "<html>A</html>"));
+        // equal content in another string instance
+        assertSame(document, cache.get("p/1", new String("<html>A</html>")));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testKeyCollisionWithDifferentContentIsMiss() throws Exception {
+        DocumentCache cache = new DocumentCache(1000, false);
+        Document document = newDocument();
+        cache.put("p/1", "<html>A</html>", document, 100);
+        assertNull(cache.get("p/1", "<html>B</html>"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // the other content replaces the entry
+        Document other = newDocument();
+        cache.put("p/1", "<html>B</html>", other, 100);
+        assertSame(other, cache.get("p/1", "<html>B</html>"));
+        assertNull(cache.get("p/1", "<html>A</html>"));
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDocumentIsEvicted() throws Exception {
+        DocumentCache cache = new DocumentCache(300, false);
+        // all keys of the same stripe share one LRU order
+        String[] keys = findKeysOfSameStripe(4);
+        Document[] documents = new Document[4];
+        for (int i = 0; i < 3; i++) {
+            documents[i] = newDocument();
+            cache.put(keys[i], keys[i], documents[i], 100);
+        }
+        assertEquals(300, cache.getEstimatedBytes());
+        // touch the first document, so the second one is the least recently used
+        assertSame(documents[0], cache.get(keys[0], keys[0]));
+        documents[3] = newDocument();
+        cache.put(keys[3], keys[3], documents[3], 100);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(300, cache.getEstimatedBytes());
+        assertEquals(3, cache.size());
+        assertSame(documents[0], cache.get(keys[0], keys[0]));
+        assertNull(cache.get(keys[1], keys[1]));
+        assertSame(documents[2], cache.get(keys[2], keys[2]));
+        assertSame(documents[3], cache.get(keys[3], keys[3]));
+    }
+
+    @Test
+    public void testSizeBoundAcrossStripes() throws Exception {
+        DocumentCache cache = new DocumentCache(1000, false);
+        for (int i = 0; i < 100; i++) {
+            cache.put("p/" + i, "html" + i, newDocument(), 100);
+            assertTrue(cache.getEstimatedBytes() <= 1000);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(90, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testDocumentLargerThanBoundIsNotCached() throws Exception {
+        DocumentCache cache = new DocumentCache(1000, false);
+        cache.put("p/1", "html", newDocument(), 1001);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testRemoveAllByPrefix() throws Exception {
+        DocumentCache cache = new DocumentCache(10000, false);
+        for (int i = 0; i < 20; i++) {
+            cache.put("session1/" + i, "html" + i, newDocument(), 100);
+            cache.put("session2/" + i, "html" + i, newDocument(), 100);
+        }
+        cache.removeAll("session1/");
+        assertEquals(20, cache.size());
+        assertEquals(2000, cache.getEstimatedBytes());
+        assertNull(cache.get("session1/0", "html0"));
+        assertNotNull(cache.get("session2/0", "html0"));
+    }
+
+    @Test
+    public void testSoftValues() throws Exception {
+        DocumentCache cache = new DocumentCache(1000, true);
+        assertTrue(cache.isSoftValues());
+        Document document = newDocument();
+        cache.put("p/1", "html", document, 100);
+        // strongly reachable from this test, so it cannot have been reclaimed
+        assertSame(document, cache.get("p/1", "html"));
+    }
+
+    @Test
+    public void testConcurrentAccessKeepsAccounting() throws Exception {
+        final DocumentCache cache = new DocumentCache(5000, false);
+        final Document document = newDocument();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 1000;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 500; i++) {
+                        String key = "p/" + (offset + i % 50);
+                        if (cache.get(key, key) == null) {
+                            cache.put(key, key, document, 100);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.getEstimatedBytes() <= 5000);
+        assertEquals(cache.size() * 100L, cache.getEstimatedBytes());
+    }
+
+    private static String[] findKeysOfSameStripe(int count) {
+        String[] keys = new String[count];
+        keys[0] = "p/0";
+        int found = 1;
+        for (int i = 1; found < count; i++) {
+            if (DocumentCache.indexOf("p/" + i) == DocumentCache.indexOf(keys[0])) {
+                keys[found++] = "p/" + i;
+            }
+        }
+        return keys;
+    }
+
+    static Document newDocument() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    }
+
+}
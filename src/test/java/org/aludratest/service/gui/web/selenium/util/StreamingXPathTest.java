@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Checks that {@link StreamingXPath} evaluates each supported expression shape like the DOM based evaluation of
+ * {@link DocCache} does, on a page as serialized by a browser. */
+@SuppressWarnings("javadoc")
+public class StreamingXPathTest {
+
+    private static final String PAGE = "<!DOCTYPE html><html><head><title>Orders &amp; Items</title>"
+            + "<script type=\"text/javascript\">if (a < b && c > d) { x = '</div>'; }</script>"
+            + "<style>div > span { color: red; }</style></head>"
+            + "<body class=\"main page\">\n"
+            + "<div id=\"header\"><h1>Orders</h1><!-- navigation --><a href=\"/home\" title=\"Home &quot;page&quot;\">Home</a>"
+            + "<a href='/orders?id=1&amp;x=2' class=\"nav active\">Orders</a></div>\n"
+            + "<div id=\"content\" data-state=\"ready\">"
+            + "<ul class=\"list\"><li class=\"item first\">One</li><li class=\"item\">Two <b>bold</b> text</li>"
+            + "<li class=\"item last\" data-id=\"3\">Three</li><li>Four</li></ul>"
+            + "<form name=\"order\"><input type=\"text\" name=\"amount\" value=\"10\"><input type=\"checkbox\" checked>"
+            + "<select name=\"country\"><option value=\"de\" selected>Germany</option><option value=\"fr\">France</option></select>"
+            + "<textarea name=\"comment\">a &lt;b&gt; c</textarea><br></form>"
+            + "<div class=\"nested\"><div class=\"nested inner\"><span>deep</span></div></div>"
+            + "<p>Text with &uuml;mlauts &#169; and <i>inline</i> elements.</p>"
+            + "<table><tbody><tr><td>A1</td><td>B1</td></tr><tr><td>A2</td><td>B2</td></tr></tbody></table>"
+            + "</div>\n<div id=\"footer\"><span class=\"copyright\">(c) 2014</span><img src=\"logo.png\" alt=\"Logo\"></div>\n"
+            + "</body></html>";
+
+    private static final String[] NODE_XPATHS = {
+            // child and descendant steps
+            "/html/body/div", "//div", "//li", "/html/body/div/ul/li", "//div//span", "//div/div", "//ul//b", "//*",
+            "/html/body/*", "//td", "//tr/td", "//table//td",
+            // attribute predicates
+            "//div[@id]", "//div[@id='content']", "//a[@href='/orders?id=1&x=2']", "//a[@title='Home \"page\"']",
+            "//li[contains(@class, 'item')]", "//li[contains(@class,'last')][@data-id='3']", "//div[@class='nested']//span",
+            "//input[@checked]", "//option[@selected]", "//*[@name]", "//li[@class]", "//div[@id = \"footer\"]/span",
+            "//body[contains(@class, 'page')]/div[@id='header']/a",
+            // text() and attribute results
+            "//li/text()", "//title/text()", "//textarea/text()", "//script/text()", "//p/text()", "//a/@href", "//li/@class",
+            "//input/@value", "//*[@id]/@id", "//img/@alt",
+            // no match
+            "//div[@id='missing']", "//blink", "//li/@missing" };
+
+    private static final String[] COUNT_XPATHS = { "count(//li)", "count(//div)", "count(//li[contains(@class, 'item')])",
+            "count(//li/text())", "count(//a/@href)", "count(//*)", "count(//div[@id='missing'])" };
+
+    private static final String[] UNSUPPORTED_XPATHS = { "//li[1]", "//li[last()]", "//div/..", "//li[text()='One']",
+            "li", "./li", "//li | //td", "//x:div", "//li[@class='item' or @class='last']", "//ul/li/following-sibling::li",
+            "//a//@href", "//span/text()/..", "string(//li)" };
+
+    @Before
+    public void setUp() {
+        // use the DOM based evaluation of DocCache as reference
+        DocCache.configure(256L * 1024L * 1024L, false, 0);
+    }
+
+    @Test
+    public void testNodeResultsEqualDomEvaluation() {
+        for (String xpath : NODE_XPATHS) {
+            StreamingXPath streamingXPath = StreamingXPath.compile(xpath);
+            assertNotNull("Not supported: " + xpath, streamingXPath);
+            assertEquals(xpath, describe(DocCache.evalXPathInHTML(xpath, PAGE)), describe(streamingXPath.evaluate(PAGE)));
+        }
+    }
+
+    @Test
+    public void testStringResultsEqualDomEvaluation() {
+        for (String xpath : NODE_XPATHS) {
+            assertEquals(xpath, DocCache.evalXPathInHTMLAsString(xpath, PAGE), StreamingXPath.compile(xpath)
+                    .evaluateAsString(PAGE));
+        }
+    }
+
+    @Test
+    public void testCountResultsEqualDomEvaluation() {
+        for (String xpath : COUNT_XPATHS) {
+            StreamingXPath streamingXPath = StreamingXPath.compile(xpath);
+            assertNotNull("Not supported: " + xpath, streamingXPath);
+            assertTrue(streamingXPath.isCount());
+            String expected = DocCache.evalXPathInHTMLAsString(xpath, PAGE);
+            // XPath numbers are formatted without fraction digits if they are integers
+            assertEquals(xpath, expected, streamingXPath.evaluateAsString(PAGE));
+        }
+    }
+
+    @Test
+    public void testUnsupportedExpressionsAreNotCompiled() {
+        for (String xpath : UNSUPPORTED_XPATHS) {
+            assertNull(xpath, StreamingXPath.compile(xpath));
+        }
+    }
+
+    @Test
+    public void testStreamingThresholdSelectsEvaluation() {
+        long before = DocCache.getStreamingEvaluationCount();
+        DocCache.evalXPathInHTML("//li", PAGE);
+        assertEquals(before, DocCache.getStreamingEvaluationCount());
+
+        DocCache.configure(256L * 1024L * 1024L, false, PAGE.length());
+        assertEquals(describe(StreamingXPath.compile("//li").evaluate(PAGE)), describe(DocCache.evalXPathInHTML("//li", PAGE)));
+        assertEquals(before + 1, DocCache.getStreamingEvaluationCount());
+        // unsupported expressions still use the DOM
+        assertEquals(4, DocCache.evalXPathInHTML("//li[position() > 0]", PAGE).getLength());
+        assertEquals(before + 1, DocCache.getStreamingEvaluationCount());
+    }
+
+    /** Describes the nodes of a node list including their subtrees, with attributes in alphabetical order. */
+    private static List<String> describe(NodeList nodes) {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            StringBuilder builder = new StringBuilder();
+            describe(nodes.item(i), builder);
+            result.add(builder.toString());
+        }
+        return result;
+    }
+
+    private static void describe(Node node, StringBuilder builder) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                builder.append('<').append(node.getNodeName());
+                Map<String, String> attributes = new TreeMap<String, String>();
+                NamedNodeMap attributeNodes = node.getAttributes();
+                for (int i = 0; i < attributeNodes.getLength(); i++) {
+                    Attr attr = (Attr) attributeNodes.item(i);
+                    attributes.put(attr.getName(), attr.getValue());
+                }
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    builder.append(' ').append(attribute.getKey()).append("=\"").append(attribute.getValue()).append('"');
+                }
+                builder.append('>');
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    describe(child, builder);
+                }
+                builder.append("</").append(node.getNodeName()).append('>');
+                break;
+            case Node.ATTRIBUTE_NODE:
+                builder.append('@').append(node.getNodeName()).append("=\"").append(node.getNodeValue()).append('"');
+                break;
+            case Node.COMMENT_NODE:
+                builder.append("<!--").append(node.getNodeValue()).append("-->");
+                break;
+            default:
+                builder.append(node.getNodeValue());
+        }
+    }
+
+}
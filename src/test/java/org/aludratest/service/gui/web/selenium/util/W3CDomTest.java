@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.web.selenium.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Checks that the parallel conversion of {@link W3CDom} produces the same document as the sequential one, and that namespace
+ * declarations only apply to the declaring element and its descendants. */
+@SuppressWarnings("javadoc")
+public class W3CDomTest {
+
+    private static final String NESTED = "<root xmlns:p=\"urn:p\">"
+            + "<a xmlns=\"urn:outer\"><b xmlns=\"urn:inner\" xmlns:p=\"urn:q\"><c/><p:d/></b><e/><p:f/></a></root>";
+
+    @Test
+    public void testSequentialNamespaceScopes() {
+        assertNestedScopes(0);
+    }
+
+    @Test
+    public void testParallelNamespaceScopes() {
+        assertNestedScopes(1);
+    }
+
+    @Test
+    public void testParallelEqualsSequentialNamespaceAware() {
+        assertParallelEqualsSequential(true);
+    }
+
+    @Test
+    public void testParallelEqualsSequentialNamespaceUnaware() {
+        assertParallelEqualsSequential(false);
+    }
+
+    @Test
+    public void testParallelEqualsSequentialHtml() {
+        String html = "<html><head><title>Orders</title><script>var x = '<b>';</script></head><body>" + createBody(3000)
+                + "</body></html>";
+        org.jsoup.nodes.Document source = Jsoup.parse(html);
+        Document sequential = convert(source, false, 0);
+        Document parallel = convert(source, false, 1);
+        assertSameNodes(sequential.getDocumentElement(), parallel.getDocumentElement(), "/");
+    }
+
+    @Test
+    public void testAppendToUsesScopeOfParent() {
+        org.jsoup.nodes.Document source = Jsoup.parse(NESTED, "", Parser.xmlParser());
+        org.jsoup.nodes.Element d = source.getElementsByTag("p:d").first();
+        Document target = new W3CDom(true).fromJsoup(Jsoup.parse("<container/>", "", Parser.xmlParser()));
+        new W3CDom(true).appendTo(d, target.getDocumentElement());
+        assertEquals("urn:q", target.getDocumentElement().getFirstChild().getNamespaceURI());
+    }
+
+    @Test
+    public void testAttributeNames() {
+        org.jsoup.nodes.Element div = new org.jsoup.nodes.Element(Tag.valueOf("div"), "");
+        div.attr("data-ok", "1");
+        div.attr("\uD800\uDC00-supplementary", "2");
+        div.attr("1st", "3");
+        div.attr("a\"b", "4");
+        Document target = new W3CDom(false).fromJsoup(Jsoup.parse("<container/>", "", Parser.xmlParser()));
+        // names with supplementary characters are left to the DOM implementation, which accepts them for XML 1.1
+        target.setXmlVersion("1.1");
+        new W3CDom(false).appendTo(div, target.getDocumentElement());
+        Element el = (Element) target.getDocumentElement().getFirstChild();
+        assertEquals("1", el.getAttribute("data-ok"));
+        assertEquals("2", el.getAttribute("\uD800\uDC00-supplementary"));
+        assertEquals(2, el.getAttributes().getLength());
+    }
+
+    private static void assertNestedScopes(int parallelThreshold) {
+        org.jsoup.nodes.Document source = Jsoup.parse(NESTED, "", Parser.xmlParser());
+        Document doc = convert(source, true, parallelThreshold);
+        Element root = doc.getDocumentElement();
+        assertNull(root.getNamespaceURI());
+        Element a = (Element) root.getFirstChild();
+        assertEquals("urn:outer", a.getNamespaceURI());
+        Element b = (Element) a.getFirstChild();
+        assertEquals("urn:inner", b.getNamespaceURI());
+        assertEquals("urn:inner", b.getFirstChild().getNamespaceURI());
+        assertEquals("urn:q", b.getLastChild().getNamespaceURI());
+        // the declarations of b must not leak to its following siblings
+        assertEquals("urn:outer", b.getNextSibling().getNamespaceURI());
+        assertEquals("urn:p", a.getLastChild().getNamespaceURI());
+    }
+
+    private static void assertParallelEqualsSequential(boolean namespaceAware) {
+        String xml = "<root xmlns=\"urn:outer\" xmlns:p=\"urn:p\">" + createBody(3000) + "</root>";
+        org.jsoup.nodes.Document source = Jsoup.parse(xml, "", Parser.xmlParser());
+        Document sequential = convert(source, namespaceAware, 0);
+        Document parallel = convert(source, namespaceAware, 1);
+        assertSameNodes(sequential.getDocumentElement(), parallel.getDocumentElement(), "/");
+    }
+
+    /** Creates sections of different sizes, so the parallel conversion builds a skeleton for the large ones, submits tasks for
+     * batches of small ones, and converts tiny batches inline. Some sections redeclare the default namespace and the prefix p. */
+    private static String createBody(int items) {
+        StringBuilder sb = new StringBuilder();
+        int item = 0;
+        int section = 0;
+        while (item < items) {
+            int sectionItems = (section % 3 == 0 ? 1200 : (section % 3 == 1 ? 40 : 2));
+            if (section % 2 == 0) {
+                sb.append("<section id=\"s").append(section).append("\" xmlns=\"urn:section").append(section)
+                        .append("\" xmlns:p=\"urn:sp").append(section).append("\">");
+            }
+            else {
+                sb.append("<section id=\"s").append(section).append("\">");
+            }
+            for (int i = 0; i < sectionItems && item < items; i++, item++) {
+                sb.append("<div class=\"item\" data-index=\"").append(item).append("\">");
+                sb.append("<p:name>Item ").append(item).append("</p:name>");
+                if (item % 7 == 0) {
+                    sb.append("<inner xmlns:p=\"urn:inner").append(item).append("\"><p:x>x</p:x></inner><p:y/>");
+                }
+                sb.append("<!-- comment ").append(item).append(" -->");
+                sb.append("text ").append(item);
+                sb.append("</div>");
+            }
+            sb.append("</section>");
+            section++;
+        }
+        return sb.toString();
+    }
+
+    private static Document convert(org.jsoup.nodes.Document source, boolean namespaceAware, int parallelThreshold) {
+        W3CDom dom = new W3CDom(namespaceAware);
+        dom.setParallelThreshold(parallelThreshold);
+        return dom.fromJsoup(source);
+    }
+
+    private static void assertSameNodes(Node expected, Node actual, String path) {
+        assertEquals(path, expected.getNodeType(), actual.getNodeType());
+        assertEquals(path, expected.getNodeName(), actual.getNodeName());
+        assertEquals(path, expected.getNamespaceURI(), actual.getNamespaceURI());
+        assertEquals(path, expected.getNodeValue(), actual.getNodeValue());
+        NamedNodeMap expectedAttributes = expected.getAttributes();
+        NamedNodeMap actualAttributes = actual.getAttributes();
+        if (expectedAttributes != null) {
+            assertEquals(path, expectedAttributes.getLength(), actualAttributes.getLength());
+            for (int i = 0; i < expectedAttributes.getLength(); i++) {
+                Attr attr = (Attr) expectedAttributes.item(i);
+                assertEquals(path + "@" + attr.getName(), attr.getValue(), ((Element) actual).getAttribute(attr.getName()));
+            }
+        }
+        NodeList expectedChildren = expected.getChildNodes();
+        NodeList actualChildren = actual.getChildNodes();
+        assertEquals(path, expectedChildren.getLength(), actualChildren.getLength());
+        for (int i = 0; i < expectedChildren.getLength(); i++) {
+            Node child = expectedChildren.item(i);
+            assertSameNodes(child, actualChildren.item(i), path + child.getNodeName() + "[" + i + "]/");
+        }
+    }
+
+}